@@ -0,0 +1,56 @@
+package edu.uob.benchmarks;
+
+import edu.uob.FileReading;
+import edu.uob.Row;
+import edu.uob.Table;
+import edu.uob.TableCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Builds the generated databases the benchmarks run against, written straight to disk. */
+public class Datasets {
+    private static final String[] NAMES = {"Steve", "Dave", "Bob", "Clive", "Sion", "Rob", "Chris", "Anna"};
+
+    // marks(id, name, mark, pass) with the given number of rows, and coursework(id, task, submission)
+    // with a tenth as many rows, each submission pointing at a marks id.
+    public static void create(String databasePath, int rows) {
+        new File(databasePath).mkdirs();
+        Random random = new Random(rows);
+        Table marks = new Table("marks");
+        marks.addFields(new ArrayList<>(Arrays.asList("name", "mark", "pass")), true);
+        for (int i = 1; i <= rows; i++) {
+            int mark = random.nextInt(100);
+            marks.addRow(new Row(new ArrayList<>(Arrays.asList(Integer.toString(i),
+                    NAMES[random.nextInt(NAMES.length)] + i, Integer.toString(mark), mark >= 40 ? "TRUE" : "FALSE"))));
+        }
+        store(databasePath, marks, rows);
+
+        int submissions = Math.max(1, rows / 10);
+        Table coursework = new Table("coursework");
+        coursework.addFields(new ArrayList<>(Arrays.asList("task", "submission")), true);
+        for (int i = 1; i <= submissions; i++) {
+            coursework.addRow(new Row(new ArrayList<>(Arrays.asList(Integer.toString(i),
+                    "task" + (i % 20), Integer.toString(1 + random.nextInt(rows))))));
+        }
+        store(databasePath, coursework, submissions);
+    }
+
+    private static void store(String databasePath, Table table, int lastId) {
+        String key = TableCache.key(databasePath, table.getName());
+        FileReading.writeTable(key, table);
+        FileReading.writeConfig(key, Integer.toString(lastId));
+    }
+
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,41 @@
+package edu.uob.benchmarks;
+
+import edu.uob.FileReading;
+import edu.uob.Parser;
+import edu.uob.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Parse-only: the interpreter is switched to parsing mode, so no table is touched.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"SELECT * FROM marks WHERE (pass == FALSE) AND (mark > 35);",
+            "INSERT INTO marks VALUES ('Steve', 65, TRUE);",
+            "JOIN coursework AND marks ON submission AND id;"})
+    public String command;
+
+    private ArrayList<String> tokens;
+    private FileReading fileReading;
+
+    @Setup
+    public void setup() throws Exception {
+        tokens = new Tokenizer().tokenize(command);
+        fileReading = new FileReading(Files.createTempDirectory("parser").toString());
+    }
+
+    @Benchmark
+    public boolean isCommand() {
+        Parser parser = new Parser(tokens, fileReading);
+        parser.setParsing();
+        return parser.isCommand();
+    }
+}
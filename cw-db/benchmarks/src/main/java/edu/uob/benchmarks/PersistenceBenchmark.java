@@ -0,0 +1,55 @@
+package edu.uob.benchmarks;
+
+import edu.uob.FileReading;
+import edu.uob.Table;
+import edu.uob.TableCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// Loading and storing a table on disk. The cache budget is zero so every load reads the file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"tab", "columnar"})
+    public String format;
+
+    private File database;
+    private FileReading fileReading;
+    private Table table;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        System.setProperty(FileReading.FORMAT_PROPERTY, format);
+        database = Files.createTempDirectory("persistence").toFile();
+        Datasets.create(database.getPath(), rows);
+        fileReading = new FileReading(database.getPath(), new TableCache(0));
+        table = fileReading.readFileToTable("marks");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty(FileReading.FORMAT_PROPERTY);
+        Datasets.delete(database);
+    }
+
+    @Benchmark
+    public Table load() {
+        return fileReading.readFileToTable("marks");
+    }
+
+    @Benchmark
+    public void store() {
+        FileReading.writeTable(TableCache.key(database.getPath(), "marks"), table);
+    }
+}
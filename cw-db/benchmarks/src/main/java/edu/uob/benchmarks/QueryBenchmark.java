@@ -0,0 +1,71 @@
+package edu.uob.benchmarks;
+
+import edu.uob.DBServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end DBServer.handleCommand against the generated marks and coursework tables.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private DBServer server;
+    private File database;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String name = "benchmark" + rows;
+        database = Paths.get("databases", name).toAbsolutePath().toFile();
+        Datasets.delete(database);
+        Datasets.create(database.getPath(), rows);
+        server = new DBServer();
+        server.handleCommand("USE " + name + ";");
+        nextId = rows / 2;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+        Datasets.delete(database);
+    }
+
+    @Benchmark
+    public String select() {
+        return server.handleCommand("SELECT name, mark FROM marks WHERE (mark > 90) AND (pass == TRUE);");
+    }
+
+    @Benchmark
+    public String join() {
+        return server.handleCommand("JOIN coursework AND marks ON submission AND id;");
+    }
+
+    @Benchmark
+    public String update() {
+        nextId = nextId % rows + 1;
+        return server.handleCommand("UPDATE marks SET mark = 50 WHERE id == " + nextId + ";");
+    }
+
+    // A DELETE that matches nothing, so every invocation scans the same table.
+    @Benchmark
+    public String delete() {
+        return server.handleCommand("DELETE FROM marks WHERE name == 'nobody';");
+    }
+
+    // Each INSERT is paired with the DELETE that removes it again, keeping the table the same size.
+    @Benchmark
+    public String insert() {
+        server.handleCommand("INSERT INTO marks VALUES ('Benchmark', 50, TRUE);");
+        return server.handleCommand("DELETE FROM marks WHERE name == 'Benchmark';");
+    }
+}
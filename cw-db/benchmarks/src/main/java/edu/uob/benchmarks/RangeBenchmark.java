@@ -0,0 +1,51 @@
+package edu.uob.benchmarks;
+
+import edu.uob.DBServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+// A range SELECT matching 0.1% of the marks table, with and without an index on the attribute.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangeBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private DBServer server;
+    private File database;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String name = "range" + rows;
+        database = Paths.get("databases", name).toAbsolutePath().toFile();
+        Datasets.delete(database);
+        Datasets.create(database.getPath(), rows);
+        server = new DBServer();
+        server.handleCommand("USE " + name + ";");
+        if (indexed) server.handleCommand("CREATE INDEX byId ON marks (id);");
+        query = "SELECT name, mark FROM marks WHERE id > " + (rows - rows / 1000) + ";";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+        Datasets.delete(database);
+    }
+
+    @Benchmark
+    public String select() {
+        return server.handleCommand(query);
+    }
+}
@@ -0,0 +1,26 @@
+package edu.uob.benchmarks;
+
+import edu.uob.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    @Param({"SELECT * FROM marks WHERE (pass == FALSE) AND (mark > 35);",
+            "INSERT INTO marks VALUES ('Steve', 65, TRUE);",
+            "UPDATE marks SET mark = 38, pass = FALSE WHERE name LIKE 'Ste';"})
+    public String command;
+
+    @Benchmark
+    public ArrayList<String> tokenize() {
+        return new Tokenizer().tokenize(command);
+    }
+}
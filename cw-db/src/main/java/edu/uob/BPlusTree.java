@@ -0,0 +1,262 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An in-memory B+tree of (key, row position) entries, ordered by key and then by position so that
+ * a key can appear once per row. Leaves are linked left to right, so a range is one descent from
+ * the root followed by a walk along the leaves.
+ *
+ * <p>Removing an entry never merges nodes. Leaves may be left under-full or empty, which only costs
+ * a little space: the owner rebuilds the tree whenever rows change position anyway.
+ */
+public class BPlusTree<K extends Comparable<K>> {
+    private static final int ORDER = 64;
+    // Bulk loading leaves room in each node so that the next few inserts do not split it straight away.
+    private static final int FILL = ORDER * 3 / 4;
+
+    // A leaf holds size entries; an inner node holds size separators and size + 1 children. Child i
+    // holds the entries from separator i - 1 (inclusive) up to separator i (exclusive).
+    private static class Node {
+        private final Object[] keys = new Object[ORDER + 1];
+        private final int[] positions = new int[ORDER + 1];
+        private final Node[] children;
+        private int size;
+        private Node next;
+
+        private Node(boolean leaf) {
+            children = leaf ? null : new Node[ORDER + 2];
+        }
+
+        private boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    /** Receives entries in order. */
+    public interface EntryVisitor<K> {
+        void visit(K key, int position);
+    }
+
+    private Node root = new Node(true);
+    private int size = 0;
+
+    public BPlusTree() {
+
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds a tree from entries that are already in (key, position) order, filling the nodes
+     * from the bottom up instead of inserting one entry at a time.
+     */
+    public static <K extends Comparable<K>> BPlusTree<K> load(ArrayList<K> keys, int[] positions) {
+        BPlusTree<K> tree = new BPlusTree<>();
+        tree.size = keys.size();
+        if (keys.size() == 0) return tree;
+        ArrayList<Node> level = new ArrayList<>();
+        ArrayList<Object> lowestKeys = new ArrayList<>();
+        ArrayList<Integer> lowestPositions = new ArrayList<>();
+        Node previous = null;
+        for (int start = 0; start < keys.size(); start += FILL) {
+            Node leaf = new Node(true);
+            leaf.size = Math.min(FILL, keys.size() - start);
+            for (int i = 0; i < leaf.size; i++) {
+                leaf.keys[i] = keys.get(start + i);
+                leaf.positions[i] = positions[start + i];
+            }
+            if (previous != null) previous.next = leaf;
+            previous = leaf;
+            level.add(leaf);
+            lowestKeys.add(leaf.keys[0]);
+            lowestPositions.add(leaf.positions[0]);
+        }
+        while (level.size() > 1) {
+            ArrayList<Node> parents = new ArrayList<>();
+            ArrayList<Object> parentKeys = new ArrayList<>();
+            ArrayList<Integer> parentPositions = new ArrayList<>();
+            for (int start = 0; start < level.size(); start += FILL + 1) {
+                Node parent = new Node(false);
+                int children = Math.min(FILL + 1, level.size() - start);
+                for (int i = 0; i < children; i++) {
+                    parent.children[i] = level.get(start + i);
+                    if (i > 0) {
+                        parent.keys[i - 1] = lowestKeys.get(start + i);
+                        parent.positions[i - 1] = lowestPositions.get(start + i);
+                    }
+                }
+                parent.size = children - 1;
+                parents.add(parent);
+                parentKeys.add(lowestKeys.get(start));
+                parentPositions.add(lowestPositions.get(start));
+            }
+            level = parents;
+            lowestKeys = parentKeys;
+            lowestPositions = parentPositions;
+        }
+        tree.root = level.get(0);
+        return tree;
+    }
+
+    public BPlusTree<K> copy() {
+        ArrayList<K> keys = new ArrayList<>(size);
+        int[] positions = new int[size];
+        forEach((key, position) -> {
+            positions[keys.size()] = position;
+            keys.add(key);
+        });
+        return load(keys, positions);
+    }
+
+    public void insert(K key, int position) {
+        insert(root, key, position);
+        if (root.size > ORDER) {
+            Node newRoot = new Node(false);
+            newRoot.children[0] = root;
+            root = newRoot;
+            splitChild(newRoot, 0);
+        }
+        size += 1;
+    }
+
+    private void insert(Node node, K key, int position) {
+        int index = upperBound(node, key, position);
+        if (node.isLeaf()) {
+            System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+            System.arraycopy(node.positions, index, node.positions, index + 1, node.size - index);
+            node.keys[index] = key;
+            node.positions[index] = position;
+            node.size += 1;
+            return;
+        }
+        Node child = node.children[index];
+        insert(child, key, position);
+        if (child.size > ORDER) splitChild(node, index);
+    }
+
+    // Splits an overfull child in two and adds the separator between the halves to the parent.
+    private void splitChild(Node parent, int index) {
+        Node child = parent.children[index];
+        Node right = new Node(child.isLeaf());
+        int middle = child.size / 2;
+        Object separatorKey;
+        int separatorPosition;
+        if (child.isLeaf()) {
+            right.size = child.size - middle;
+            System.arraycopy(child.keys, middle, right.keys, 0, right.size);
+            System.arraycopy(child.positions, middle, right.positions, 0, right.size);
+            right.next = child.next;
+            child.next = right;
+            separatorKey = right.keys[0];
+            separatorPosition = right.positions[0];
+        } else {
+            separatorKey = child.keys[middle];
+            separatorPosition = child.positions[middle];
+            right.size = child.size - middle - 1;
+            System.arraycopy(child.keys, middle + 1, right.keys, 0, right.size);
+            System.arraycopy(child.positions, middle + 1, right.positions, 0, right.size);
+            System.arraycopy(child.children, middle + 1, right.children, 0, right.size + 1);
+            Arrays.fill(child.children, middle + 1, child.size + 1, null);
+        }
+        Arrays.fill(child.keys, middle, child.size, null);
+        child.size = middle;
+        System.arraycopy(parent.keys, index, parent.keys, index + 1, parent.size - index);
+        System.arraycopy(parent.positions, index, parent.positions, index + 1, parent.size - index);
+        System.arraycopy(parent.children, index + 1, parent.children, index + 2, parent.size - index);
+        parent.keys[index] = separatorKey;
+        parent.positions[index] = separatorPosition;
+        parent.children[index + 1] = right;
+        parent.size += 1;
+    }
+
+    /** Removes the entry if it is present, returning whether it was. */
+    public boolean remove(K key, int position) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[upperBound(node, key, position)];
+        }
+        int index = upperBound(node, key, position) - 1;
+        if (index < 0 || compare(key, position, node, index) != 0) return false;
+        System.arraycopy(node.keys, index + 1, node.keys, index, node.size - index - 1);
+        System.arraycopy(node.positions, index + 1, node.positions, index, node.size - index - 1);
+        node.size -= 1;
+        node.keys[node.size] = null;
+        size -= 1;
+        return true;
+    }
+
+    /**
+     * Passes the position of every entry whose key lies between from and to, in key order. A null
+     * bound leaves that end of the range open.
+     */
+    public void range(K from, boolean fromInclusive, K to, boolean toInclusive, IntConsumer action) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[from == null ? 0 : lowerBound(node, from, fromInclusive)];
+        }
+        int index = from == null ? 0 : lowerBound(node, from, fromInclusive);
+        while (node != null) {
+            for (; index < node.size; index++) {
+                if (to != null) {
+                    int c = key(node, index).compareTo(to);
+                    if (c > 0 || (c == 0 && !toInclusive)) return;
+                }
+                action.accept(node.positions[index]);
+            }
+            node = node.next;
+            index = 0;
+        }
+    }
+
+    public void forEach(EntryVisitor<K> visitor) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[0];
+        }
+        for (; node != null; node = node.next) {
+            for (int i = 0; i < node.size; i++) {
+                visitor.visit(key(node, i), node.positions[i]);
+            }
+        }
+    }
+
+    // The number of keys in the node at or after which entries can lie past the bound.
+    private int lowerBound(Node node, K bound, boolean inclusive) {
+        int low = 0;
+        int high = node.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int c = key(node, middle).compareTo(bound);
+            if (c < 0 || (c == 0 && !inclusive)) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    // The number of keys in the node that are at or before the entry.
+    private int upperBound(Node node, K key, int position) {
+        int low = 0;
+        int high = node.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(key, position, node, middle) >= 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private int compare(K key, int position, Node node, int index) {
+        int c = key.compareTo(key(node, index));
+        return c != 0 ? c : Integer.compare(position, node.positions[index]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(Node node, int index) {
+        return (K) node.keys[index];
+    }
+}
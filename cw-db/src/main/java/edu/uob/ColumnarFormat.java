@@ -0,0 +1,284 @@
+package edu.uob;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Binary column-oriented table file (.col). Layout:
+ * <pre>
+ *   int magic, int version, int columns, int rows
+ *   per column: name
+ *   per column: byte type, long[] null bitmap, then the typed block
+ *     LONG    rows x int64
+ *     DOUBLE  rows x float64
+ *     BOOLEAN long[] bitmap of TRUE cells
+ *     STRING  int dictionary size, dictionary entries, rows x int32 code
+ * </pre>
+ * Strings are written as an int length followed by UTF-8 bytes. A column only gets a numeric type
+ * when every value prints back exactly as it was stored, so loading never changes a cell's text.
+ */
+public class ColumnarFormat {
+    public static final String EXTENSION = ".col";
+    private static final int MAGIC = 0x434F4C31;
+    private static final int VERSION = 1;
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte STRING = 3;
+
+    private ColumnarFormat() {
+    }
+
+    private static boolean isNull(String value) {
+        return value.equals("NULL");
+    }
+
+    private static boolean isCanonicalLong(String value) {
+        int start = value.startsWith("-") ? 1 : 0;
+        if (value.length() == start || value.length() - start > 18) return false;
+        if (value.length() - start > 1 && value.charAt(start) == '0') return false;
+        for (int i = start; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return !value.equals("-0");
+    }
+
+    private static boolean isCanonicalDouble(String value) {
+        if (value.length() == 0 || !(Character.isDigit(value.charAt(value.length() - 1)))) return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isDigit(c) && c != '.' && c != '-' && c != 'E') return false;
+        }
+        try {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static byte inferType(Table table, int column) {
+        boolean longs = true;
+        boolean doubles = true;
+        boolean booleans = true;
+        for (Row row : table.getRows()) {
+            String value = row.getValue(column);
+            if (isNull(value)) continue;
+            longs = longs && isCanonicalLong(value);
+            doubles = doubles && isCanonicalDouble(value);
+            booleans = booleans && (value.equals("TRUE") || value.equals("FALSE"));
+            if (!longs && !doubles && !booleans) return STRING;
+        }
+        if (longs) return LONG;
+        if (doubles) return DOUBLE;
+        return BOOLEAN;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeBitmap(DataOutputStream out, long[] bitmap) throws IOException {
+        for (long word : bitmap) {
+            out.writeLong(word);
+        }
+    }
+
+    public static void write(File file, Table table) throws IOException {
+        int rows = table.getNumberOfRows();
+        int columns = table.getNumberOfFields();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns);
+            out.writeInt(rows);
+            for (String field : table.getFields()) {
+                writeString(out, field);
+            }
+            for (int c = 0; c < columns; c++) {
+                writeColumn(out, table, c, rows);
+            }
+        }
+    }
+
+    private static void writeColumn(DataOutputStream out, Table table, int column, int rows) throws IOException {
+        byte type = inferType(table, column);
+        long[] nulls = new long[(rows + 63) / 64];
+        for (int r = 0; r < rows; r++) {
+            if (isNull(table.getRows().get(r).getValue(column))) nulls[r >> 6] |= 1L << r;
+        }
+        out.writeByte(type);
+        writeBitmap(out, nulls);
+        if (type == LONG) {
+            for (int r = 0; r < rows; r++) {
+                String value = table.getRows().get(r).getValue(column);
+                out.writeLong(isNull(value) ? 0 : Long.parseLong(value));
+            }
+        } else if (type == DOUBLE) {
+            for (int r = 0; r < rows; r++) {
+                String value = table.getRows().get(r).getValue(column);
+                out.writeDouble(isNull(value) ? 0 : Double.parseDouble(value));
+            }
+        } else if (type == BOOLEAN) {
+            long[] trues = new long[nulls.length];
+            for (int r = 0; r < rows; r++) {
+                if (table.getRows().get(r).getValue(column).equals("TRUE")) trues[r >> 6] |= 1L << r;
+            }
+            writeBitmap(out, trues);
+        } else {
+            HashMap<String, Integer> codes = new HashMap<>();
+            ArrayList<String> dictionary = new ArrayList<>();
+            int[] cells = new int[rows];
+            for (int r = 0; r < rows; r++) {
+                String value = table.getRows().get(r).getValue(column);
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    codes.put(value, code);
+                    dictionary.add(value);
+                }
+                cells[r] = code;
+            }
+            out.writeInt(dictionary.size());
+            for (String value : dictionary) {
+                writeString(out, value);
+            }
+            for (int cell : cells) {
+                out.writeInt(cell);
+            }
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new IOException("A string runs past the end of the file.");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long[] readBitmap(MappedByteBuffer buffer, int rows) {
+        long[] bitmap = new long[(rows + 63) / 64];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = buffer.getLong();
+        }
+        return bitmap;
+    }
+
+    private static boolean isSet(long[] bitmap, int row) {
+        return (bitmap[row >> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Maps the file and decodes it column by column. Each column's parsed form (see TypedColumn) is
+     * filled in straight from its typed block, so comparisons on a loaded table never parse its
+     * numbers back out of text; only the rows' cell strings are made. A truncated or corrupt file
+     * throws an IOException rather than whatever the decoding ran into.
+     */
+    public static Table read(File file, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, name);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("The columnar table file is truncated or corrupt: " + file);
+        }
+    }
+
+    private static Table decode(MappedByteBuffer buffer, String name) throws IOException {
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a columnar table file.");
+        }
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        // Every column has at least a type byte and a null bitmap, so larger counts cannot be right.
+        if (columns < 0 || rows < 0 || (long) columns * (1 + (rows + 63) / 64 * 8L) > buffer.remaining()) {
+            throw new IOException("The column and row counts do not fit the file.");
+        }
+        ArrayList<String> fields = new ArrayList<>(columns);
+        for (int c = 0; c < columns; c++) {
+            fields.add(readString(buffer));
+        }
+        String[][] cells = new String[rows][columns];
+        TypedColumn[] typed = new TypedColumn[columns];
+        for (int c = 0; c < columns; c++) {
+            typed[c] = readColumn(buffer, cells, c, rows);
+        }
+        Table table = new Table(name);
+        table.addFields(fields, false);
+        for (int r = 0; r < rows; r++) {
+            ArrayList<String> values = new ArrayList<>(columns);
+            for (int c = 0; c < columns; c++) {
+                values.add(cells[r][c]);
+            }
+            table.addRow(new Row(values));
+        }
+        for (int c = 0; c < columns; c++) {
+            table.setTypedColumn(c, typed[c]);
+        }
+        return table;
+    }
+
+    private static TypedColumn readColumn(MappedByteBuffer buffer, String[][] cells, int column, int rows) throws IOException {
+        byte type = buffer.get();
+        long[] nulls = readBitmap(buffer, rows);
+        TypedColumn typed = new TypedColumn(rows);
+        if (type == LONG) {
+            for (int r = 0; r < rows; r++) {
+                long value = buffer.getLong();
+                if (isSet(nulls, r)) {
+                    cells[r][column] = "NULL";
+                    typed.setKeyword(r);
+                } else {
+                    cells[r][column] = Long.toString(value);
+                    typed.setNumber(r, value, true);
+                }
+            }
+        } else if (type == DOUBLE) {
+            for (int r = 0; r < rows; r++) {
+                double value = buffer.getDouble();
+                if (isSet(nulls, r)) {
+                    cells[r][column] = "NULL";
+                    typed.setKeyword(r);
+                } else {
+                    cells[r][column] = Double.toString(value);
+                    typed.setNumber(r, value, cells[r][column].indexOf('E') < 0);
+                }
+            }
+        } else if (type == BOOLEAN) {
+            long[] trues = readBitmap(buffer, rows);
+            for (int r = 0; r < rows; r++) {
+                cells[r][column] = isSet(nulls, r) ? "NULL" : (isSet(trues, r) ? "TRUE" : "FALSE");
+                typed.setKeyword(r);
+            }
+        } else if (type == STRING) {
+            int size = buffer.getInt();
+            if (size < 0 || size > buffer.remaining() / 4) throw new IOException("A dictionary runs past the end of the file.");
+            String[] dictionary = new String[size];
+            // Each distinct string is parsed once, and its cells copy the result.
+            TypedColumn entries = new TypedColumn(size);
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(buffer);
+                entries.set(i, dictionary[i]);
+            }
+            for (int r = 0; r < rows; r++) {
+                int code = buffer.getInt();
+                cells[r][column] = dictionary[code];
+                typed.copy(r, entries, code);
+            }
+        } else {
+            throw new IOException("Unknown column type " + type + ".");
+        }
+        return typed;
+    }
+}
@@ -0,0 +1,101 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/** One [AttributeName] [Comparator] [Value] test. Everything about the value is worked out once, up front. */
+public class Comparison implements Condition {
+    private final int attrIndex;
+    private final String comparator;
+    private final String value;
+    private final boolean isNumericValue;
+    private final double numericValue;
+    private final boolean valueIsKeyword;
+    private final boolean valueIsQuoted;
+    private final boolean isRangeCompare;
+    private final boolean isUnquotedLike;
+
+    // newValue is the token as written, keywords capitalised and quotes still on.
+    public Comparison(int attrIndex, String comparator, String newValue) {
+        this.attrIndex = attrIndex;
+        this.comparator = comparator;
+        boolean isStrLit = newValue.contains("'");
+        this.value = newValue.replaceAll("^'|'$", "");
+        this.isNumericValue = !isStrLit && TypedColumn.isDouble(value);
+        this.numericValue = isNumericValue ? Double.parseDouble(value) : 0;
+        this.valueIsKeyword = TypedColumn.isKeyword(newValue);
+        this.valueIsQuoted = newValue.matches("^'.*'$");
+        this.isRangeCompare = comparator.contains(">") || comparator.contains("<");
+        this.isUnquotedLike = comparator.equalsIgnoreCase("LIKE") && !newValue.contains("'");
+    }
+
+    @Override
+    public IntPredicate bind(Table table) {
+        TypedColumn column = table.getTypedColumn(attrIndex);
+        IntPredicate method = decideComparator(table.getRows(), column);
+        return i -> isSensibleCompare(column, i) && method.test(i);
+    }
+
+    // A range over an indexed column reads the matching rows straight out of the index.
+    @Override
+    public BitSet match(Table table, BitSet candidates) {
+        if (isRangeCompare && (valueIsKeyword || valueIsQuoted || isNumericValue)) {
+            TableIndex index = table.getIndexOn(attrIndex);
+            if (index != null) {
+                // Keywords cannot be ordered, so nothing is in range of one.
+                if (valueIsKeyword) return new BitSet();
+                BitSet matches = index.select(comparator, valueIsQuoted, numericValue, value);
+                matches.and(candidates);
+                return matches;
+            }
+        }
+        return Condition.super.match(table, candidates);
+    }
+
+    // Keywords and mismatched kinds (number against string) cannot be ordered, only tested for equality.
+    private boolean isSensibleCompare(TypedColumn column, int i) {
+        if (column.isKeyword(i) || valueIsKeyword) {
+            if (isRangeCompare) {
+                return false;
+            }
+        }
+        if (isUnquotedLike) {
+            return false;
+        }
+        if (column.isPlainNumber(i) == valueIsQuoted) {
+            return !isRangeCompare;
+        }
+        return true;
+    }
+
+    // Numeric cells compare as doubles, everything else as strings.
+    private IntPredicate decideComparator(ArrayList<Row> rows, TypedColumn column) {
+        switch (comparator) {
+            case "==":
+                return i -> isNumeric(column, i) ? column.getNumber(i) == numericValue
+                        : rows.get(i).getValue(attrIndex).equals(value);
+            case "!=":
+                return i -> isNumeric(column, i) ? column.getNumber(i) != numericValue
+                        : !rows.get(i).getValue(attrIndex).equals(value);
+            case "<=":
+                return i -> isNumeric(column, i) ? !(column.getNumber(i) > numericValue)
+                        : rows.get(i).getValue(attrIndex).compareTo(value) <= 0;
+            case ">=":
+                return i -> isNumeric(column, i) ? !(column.getNumber(i) < numericValue)
+                        : rows.get(i).getValue(attrIndex).compareTo(value) >= 0;
+            case "<":
+                return i -> isNumeric(column, i) ? !(column.getNumber(i) >= numericValue)
+                        : rows.get(i).getValue(attrIndex).compareTo(value) < 0;
+            case ">":
+                return i -> isNumeric(column, i) ? !(column.getNumber(i) <= numericValue)
+                        : rows.get(i).getValue(attrIndex).compareTo(value) > 0;
+            default:
+                return i -> rows.get(i).getValue(attrIndex).contains(value);
+        }
+    }
+
+    private boolean isNumeric(TypedColumn column, int i) {
+        return isNumericValue && column.isNumeric(i);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * A compiled WHERE clause: comparisons joined by AND and OR. The whole clause is evaluated against
+ * the rows in one go, as bitmaps over row positions, so combining comparisons is word-wise work
+ * rather than a search per row.
+ *
+ * <p>Results keep the order the old table-merging evaluation gave: AND keeps the order of its left
+ * side, and OR lists its left side's rows followed by any new rows from its right side. That order
+ * is a list of runs, each in position order, so it is kept as a list of bitmaps.
+ */
+public interface Condition {
+
+    /** Matches every row; stands in for a level that has no comparison yet. */
+    Condition ALL = table -> i -> true;
+
+    /** A test of whether the row at a given position matches. It must be safe to call from several threads. */
+    IntPredicate bind(Table table);
+
+    /** The candidate rows that match. Rows outside candidates are never tested. */
+    default BitSet match(Table table, BitSet candidates) {
+        return ParallelScan.select(bind(table), candidates);
+    }
+
+    /** The candidate rows that match, as runs of positions to be read one after another. */
+    default ArrayList<BitSet> runs(Table table, BitSet candidates) {
+        ArrayList<BitSet> runs = new ArrayList<>();
+        runs.add(match(table, candidates));
+        return runs;
+    }
+
+    /** The positions of the matching rows, in result order. */
+    default int[] select(Table table) {
+        BitSet all = new BitSet(table.getNumberOfRows());
+        all.set(0, table.getNumberOfRows());
+        ArrayList<BitSet> runs = runs(table, all);
+        int count = 0;
+        for (BitSet run : runs) {
+            count += run.cardinality();
+        }
+        int[] positions = new int[count];
+        int next = 0;
+        for (BitSet run : runs) {
+            for (int i = run.nextSetBit(0); i >= 0; i = run.nextSetBit(i + 1)) {
+                positions[next++] = i;
+            }
+        }
+        return positions;
+    }
+
+    static Condition and(Condition left, Condition right) {
+        if (left == ALL) return right;
+        if (right == ALL) return left;
+        return new And(left, right);
+    }
+
+    static Condition or(Condition left, Condition right) {
+        if (left == ALL || right == ALL) return ALL;
+        return new Or(left, right);
+    }
+
+    /** Reduces table to the rows matching condition. */
+    static void filter(Table table, Condition condition) {
+        if (condition == ALL) return;
+        table.selectRows(condition.select(table));
+    }
+
+    private static BitSet union(ArrayList<BitSet> runs) {
+        BitSet union = new BitSet();
+        for (BitSet run : runs) {
+            union.or(run);
+        }
+        return union;
+    }
+
+    // The right side is only tested on rows the left side let through.
+    final class And implements Condition {
+        private final Condition left;
+        private final Condition right;
+
+        private And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public IntPredicate bind(Table table) {
+            IntPredicate first = left.bind(table);
+            IntPredicate second = right.bind(table);
+            return i -> first.test(i) && second.test(i);
+        }
+
+        @Override
+        public BitSet match(Table table, BitSet candidates) {
+            return right.match(table, left.match(table, candidates));
+        }
+
+        @Override
+        public ArrayList<BitSet> runs(Table table, BitSet candidates) {
+            ArrayList<BitSet> runs = left.runs(table, candidates);
+            BitSet matches = right.match(table, union(runs));
+            for (BitSet run : runs) {
+                run.and(matches);
+            }
+            return runs;
+        }
+    }
+
+    // The right side is only tested on rows the left side did not already match.
+    final class Or implements Condition {
+        private final Condition left;
+        private final Condition right;
+
+        private Or(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public IntPredicate bind(Table table) {
+            IntPredicate first = left.bind(table);
+            IntPredicate second = right.bind(table);
+            return i -> first.test(i) || second.test(i);
+        }
+
+        @Override
+        public BitSet match(Table table, BitSet candidates) {
+            BitSet matches = left.match(table, candidates);
+            BitSet rest = (BitSet) candidates.clone();
+            rest.andNot(matches);
+            matches.or(right.match(table, rest));
+            return matches;
+        }
+
+        @Override
+        public ArrayList<BitSet> runs(Table table, BitSet candidates) {
+            ArrayList<BitSet> runs = left.runs(table, candidates);
+            BitSet rest = (BitSet) candidates.clone();
+            rest.andNot(union(runs));
+            runs.addAll(right.runs(table, rest));
+            return runs;
+        }
+    }
+}
@@ -2,37 +2,197 @@ package edu.uob;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 
-public class DBClient {
+/**
+ * A connection to a DBServer that can be used as a library. Commands are sent without waiting for
+ * earlier replies; the server answers a connection's commands in order, so each reply completes the
+ * oldest outstanding future. A background thread reads the replies.
+ *
+ * <p>Run with no arguments for the interactive prompt, or with --script &lt;file&gt; to stream every
+ * line of a file to the server and print the replies.
+ */
+public class DBClient implements Closeable {
 
     private static final char END_OF_TRANSMISSION = 4;
+    // Enough to keep the server busy without letting replies for a huge script pile up in memory.
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    private final Socket socket;
+    private final BufferedReader socketReader;
+    private final BufferedWriter socketWriter;
+    private final ConcurrentLinkedQueue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+    private final Semaphore inFlight;
+    private final Thread readerThread;
+    private volatile IOException failure;
+
+    public DBClient(String host, int port) throws IOException {
+        this(host, port, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public DBClient(String host, int port, int maxInFlight) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+        inFlight = new Semaphore(maxInFlight);
+        readerThread = new Thread(this::readReplies, "DBClient reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
 
     public static void main(String[] args) throws IOException {
-        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
-        Socket socket = new Socket("localhost", 8888);
-        BufferedReader socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        BufferedWriter socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-        while (!Thread.interrupted()) {
-            handleNextCommand(input, socketReader, socketWriter);
+        try (DBClient client = new DBClient("localhost", 8888)) {
+            if (args.length == 2 && args[0].equals("--script")) {
+                for (String reply : client.runScript(args[1]).join()) {
+                    System.out.println(reply);
+                }
+                return;
+            }
+            BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+            while (!Thread.interrupted()) {
+                handleNextCommand(input, client);
+            }
         }
     }
 
-    private static void handleNextCommand(BufferedReader commandLine, BufferedReader socketReader, BufferedWriter socketWriter) throws IOException {
+    private static void handleNextCommand(BufferedReader commandLine, DBClient client) throws IOException {
         System.out.print("SQL:> ");
         String command = commandLine.readLine();
-        socketWriter.write(command + "\n");
-        socketWriter.flush();
-        String incomingMessage = socketReader.readLine();
-        if (incomingMessage == null) {
-            throw new IOException("Server disconnected (end-of-stream)");
-        }
-        while (incomingMessage != null && !incomingMessage.contains("" + END_OF_TRANSMISSION + "")) {
-            System.out.println(incomingMessage);
-            incomingMessage = socketReader.readLine();
+        if (command == null) {
+            throw new IOException("End of input");
+        }
+        System.out.println(client.submit(command).join());
+    }
+
+    /** Sends a command and returns its reply, without the END_OF_TRANSMISSION framing, once it arrives. */
+    public CompletableFuture<String> submit(String command) throws IOException {
+        CompletableFuture<String> reply = send(command);
+        flush();
+        return reply;
+    }
+
+    /** Sends every command in one go and returns their replies in the same order. */
+    public CompletableFuture<List<String>> submitAll(List<String> commands) throws IOException {
+        ArrayList<CompletableFuture<String>> replies = new ArrayList<>(commands.size());
+        for (String command : commands) {
+            replies.add(send(command));
+        }
+        flush();
+        return allOf(replies);
+    }
+
+    /**
+     * Streams each non-empty line of a script file to the server as a command, without waiting for
+     * replies, and returns the replies in the order of the lines.
+     */
+    public CompletableFuture<List<String>> runScript(String fileName) throws IOException {
+        ArrayList<CompletableFuture<String>> replies = new ArrayList<>();
+        try (BufferedReader script = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = script.readLine()) != null) {
+                if (line.trim().length() == 0) continue;
+                replies.add(send(line));
+            }
+        }
+        flush();
+        return allOf(replies);
+    }
+
+    private static CompletableFuture<List<String>> allOf(ArrayList<CompletableFuture<String>> replies) {
+        return CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            ArrayList<String> results = new ArrayList<>(replies.size());
+            for (CompletableFuture<String> reply : replies) {
+                results.add(reply.join());
+            }
+            return results;
+        });
+    }
+
+    // The future is queued before the command is written, so it is always there when the reply comes.
+    private CompletableFuture<String> send(String command) throws IOException {
+        if (command.indexOf('\n') >= 0 || command.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("A command must fit on one line.");
+        }
+        try {
+            // Commands still sitting in the buffer would never be answered, so send them before waiting.
+            if (!inFlight.tryAcquire()) {
+                flush();
+                inFlight.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to send a command", e);
+        }
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        synchronized (socketWriter) {
+            if (failure != null) {
+                inFlight.release();
+                throw failure;
+            }
+            pending.add(reply);
+            socketWriter.write(command);
+            socketWriter.write("\n");
+        }
+        return reply;
+    }
+
+    public void flush() throws IOException {
+        synchronized (socketWriter) {
+            socketWriter.flush();
+        }
+    }
+
+    // Each reply is its lines up to one holding only END_OF_TRANSMISSION, less the newline the server adds before it.
+    private void readReplies() {
+        StringBuilder reply = new StringBuilder();
+        try {
+            String line;
+            while ((line = socketReader.readLine()) != null) {
+                if (!line.equals("" + END_OF_TRANSMISSION)) {
+                    reply.append(line).append("\n");
+                    continue;
+                }
+                if (reply.length() > 0) reply.setLength(reply.length() - 1);
+                CompletableFuture<String> future = pending.poll();
+                inFlight.release();
+                if (future != null) future.complete(reply.toString());
+                reply.setLength(0);
+            }
+            failAll(new IOException("Server disconnected (end-of-stream)"));
+        } catch (IOException e) {
+            failAll(e);
+        }
+    }
+
+    private void failAll(IOException e) {
+        synchronized (socketWriter) {
+            failure = e;
+        }
+        CompletableFuture<String> future;
+        while ((future = pending.poll()) != null) {
+            future.completeExceptionally(e);
+            inFlight.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -1,24 +1,39 @@
 package edu.uob;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.Paths;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** This class implements the DB server. */
 public class DBServer {
 
-    private static final char END_OF_TRANSMISSION = 4;
+    static final char END_OF_TRANSMISSION = 4;
     private String storageFolderPath;
-    private FileReading fileReading;
-    private String errorMessage = "";
+    private Session session;
+    private TableCache tableCache = new TableCache();
+    private WalManager walManager = new WalManager(tableCache);
+    private LockManager lockManager = new LockManager();
+    private PlanCache planCache = new PlanCache();
+    private Metrics metrics = new Metrics();
+    private SlowQueryLog slowQueryLog;
 
     public static void main(String args[]) throws IOException {
         DBServer server = new DBServer();
-        server.blockingListenOn(8888);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.metrics.register();
+        if (args.length > 0 && args[0].equals("--blocking")) {
+            server.blockingListenOn(8888);
+        } else if (args.length > 0 && args[0].equals("--selector")) {
+            new SelectorServer(server).listenOn(8888);
+        } else {
+            server.concurrentListenOn(8888);
+        }
     }
 
     /**
@@ -26,13 +41,15 @@ public class DBServer {
     */
     public DBServer() {
         storageFolderPath = Paths.get("databases").toAbsolutePath().toString();
-        fileReading = new FileReading(storageFolderPath);
+        session = newSession();
+        slowQueryLog = new SlowQueryLog(storageFolderPath);
         try {
             // Create the database storage folder if it doesn't already exist !
             Files.createDirectories(Paths.get(storageFolderPath));
         } catch(IOException ioe) {
             System.out.println("Can't seem to create database storage folder " + storageFolderPath);
         }
+        walManager.recover(storageFolderPath);
     }
 
     /**
@@ -42,34 +59,233 @@ public class DBServer {
     * <p>This method handles all incoming DB commands and carries out the required actions.
     */
     public String handleCommand(String command) {
-        // TODO implement your server logic here
-        // This should return [OK] or [ERROR], along with the query response.
+        return handleCommand(command, session);
+    }
 
+    /** Runs a command against the given session's current database. Safe to call from several threads. */
+    public String handleCommand(String command, Session session) {
+        StringWriter writer = new StringWriter();
+        try {
+            handleCommand(command, session, writer);
+        } catch (IOException e) {
+            // A StringWriter never throws.
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Streams the response straight into writer, row by row, instead of building it up as a String.
+     * Statements seen before are run from their cached plan, skipping the tokenizer and parser.
+     * Every statement's timings and counts go into the server's Metrics, and slow ones into its SlowQueryLog.
+     */
+    public void handleCommand(String command, Session session, Writer writer) throws IOException {
+        Metrics.Trace trace = new Metrics.Trace();
+        session.getFileReading().setTrace(trace);
+        try {
+            runCommand(command, session, writer);
+        } finally {
+            session.getFileReading().unlockAll();
+            trace.finish();
+            metrics.record(command, trace);
+            slowQueryLog.log(command, trace);
+        }
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    private void runCommand(String command, Session session, Writer writer) throws IOException {
+        FileReading fileReading = session.getFileReading();
+        Metrics.Trace trace = fileReading.getTrace();
+        String key = PlanCache.normalise(command);
+        Plan plan = planCache.get(key);
+        if (plan != null && plan.getPlaceholders() == 0) {
+            // A cached plan stands in for tokenizing and parsing, so finding it is the parse.
+            trace.mark(Metrics.Phase.PARSE);
+            if (runPlan(plan, new ArrayList<>(), fileReading, writer)) return;
+        }
         Tokenizer tokenizer = new Tokenizer();
         ArrayList<String> tokens = tokenizer.tokenize(command);
+        trace.mark(Metrics.Phase.TOKENIZE);
+        switch (tokens.get(0).toUpperCase()) {
+            case "PREPARE":
+                prepare(tokens, session, writer);
+                return;
+            case "EXECUTE":
+                execute(tokens, session, writer);
+                return;
+            case "DEALLOCATE":
+                deallocate(tokens, session, writer);
+                return;
+            case "SHOW":
+                showStats(tokens, writer);
+                return;
+        }
+        if (plan == null) {
+            plan = Plan.record(tokens, false);
+            trace.mark(Metrics.Phase.PARSE);
+            if (plan.isValid()) {
+                planCache.put(key, plan);
+                if (runPlan(plan, new ArrayList<>(), fileReading, writer)) return;
+            }
+        }
+        runParser(tokens, fileReading, writer);
+    }
+
+    private void runParser(ArrayList<String> tokens, FileReading fileReading, Writer writer) throws IOException {
         Parser parser = new Parser(tokens, fileReading);
-        String msg = "[OK]";
-        errorMessage = "";
-        if (parser.isCommand()) {
-            Table table = parser.execute();
-            if (parser.getWrite()) {
-                fileReading.writeTableToFile(table);
+        // The parser runs each part of the statement as soon as it has parsed it, so this is all execution.
+        boolean valid = parser.isCommand();
+        parser.recordTo(fileReading.getTrace());
+        if (valid) {
+            writeResult(parser.execute(), parser.getWrite(), parser.getRead(), parser.getChanges(), fileReading, writer);
+        } else {
+            String errorMessage = updateErrorMessage("", parser.getErrorMessage());
+            errorMessage = updateErrorMessage(errorMessage, parser.getInterpretErrors());
+            writer.write("[ERROR]" + errorMessage);
+        }
+    }
+
+    // Returns false, having written nothing, if the plan did not fit this time and needs a full parse.
+    // A step that failed finally, such as a lock that could not be had, is reported here rather than
+    // run again by the parser.
+    private boolean runPlan(Plan plan, ArrayList<String> values, FileReading fileReading, Writer writer) throws IOException {
+        Interpreter interpreter = plan.replay(fileReading, values);
+        if (interpreter == null) return false;
+        interpreter.recordTo(fileReading.getTrace());
+        if (interpreter.isFailedFinally()) {
+            writer.write("[ERROR]" + updateErrorMessage("", interpreter.getErrorMessage()));
+            return true;
+        }
+        Table table = interpreter.execute(plan.getWrite());
+        writeResult(table, plan.getWrite(), plan.getRead(), interpreter.getChanges(), fileReading, writer);
+        return true;
+    }
+
+    private void writeResult(Table table, boolean write, boolean read, ArrayList<WriteAheadLog.Record> changes,
+                             FileReading fileReading, Writer writer) throws IOException {
+        Metrics.Trace trace = fileReading.getTrace();
+        trace.mark(Metrics.Phase.EXECUTE);
+        if (write) {
+            fileReading.writeTableToFile(table, changes);
+            boolean written = fileReading.commit();
+            trace.mark(Metrics.Phase.PERSIST);
+            if (!written) {
+                fileReading.unlockAll();
+                writer.write("[ERROR] The changes could not be written to disk.");
+                return;
             }
-            else if (parser.getRead()) {
-                msg = table.writeToString(msg);
+        }
+        // The result is this statement's own copy, so other statements need not wait while it is sent.
+        fileReading.unlockAll();
+        writer.write("[OK]");
+        if (!write && read) {
+            writer.write("\n");
+            table.writeTo(writer);
+            trace.addRowsReturned(table.getNumberOfRows());
+        }
+        trace.mark(Metrics.Phase.SERIALIZE);
+    }
+
+    // PREPARE [StatementName] AS <Command>, where ? marks each [Value] to be filled in by EXECUTE.
+    private void prepare(ArrayList<String> tokens, Session session, Writer writer) throws IOException {
+        if (tokens.size() < 5 || !tokens.get(1).matches("^[a-zA-Z0-9]+$") || !tokens.get(2).equalsIgnoreCase("AS")) {
+            writer.write("[ERROR] Expected PREPARE [StatementName] AS <Command>.");
+            return;
+        }
+        ArrayList<String> statement = new ArrayList<>(tokens.subList(3, tokens.size()));
+        // Tokens joined by a control character can never collide with the key of a plain statement.
+        String key = "\u0000" + String.join("\u0000", statement);
+        Plan plan = planCache.get(key);
+        if (plan == null) {
+            plan = Plan.record(statement, true);
+            if (!plan.isValid()) {
+                writer.write("[ERROR]" + updateErrorMessage("", plan.getErrorMessage()));
+                return;
             }
-        } else {
-            updateErrorMessage(parser.getErrorMessage());
-            updateErrorMessage(parser.getInterpretErrors());
-            msg = "[ERROR]" + errorMessage;
+            planCache.put(key, plan);
+        }
+        session.putPrepared(tokens.get(1), plan);
+        writer.write("[OK]");
+    }
+
+    // EXECUTE [StatementName] or EXECUTE [StatementName] USING <ValueList>
+    private void execute(ArrayList<String> tokens, Session session, Writer writer) throws IOException {
+        ArrayList<String> values = new ArrayList<>();
+        int i = 2;
+        if (tokens.size() > 3 && tokens.get(2).equalsIgnoreCase("USING")) {
+            for (i = 3; i + 1 < tokens.size(); i += 2) {
+                values.add(tokens.get(i));
+                if (!tokens.get(i + 1).equals(",")) {
+                    i += 1;
+                    break;
+                }
+            }
+        }
+        if (tokens.size() < 3 || i != tokens.size() - 1 || !tokens.get(i).equals(";")) {
+            writer.write("[ERROR] Expected EXECUTE [StatementName] USING <ValueList>;");
+            return;
+        }
+        Plan plan = session.getPrepared(tokens.get(1));
+        if (plan == null) {
+            writer.write("[ERROR] The prepared statement \"" + tokens.get(1) + "\" does not exist.");
+            return;
+        }
+        if (values.size() != plan.getPlaceholders()) {
+            writer.write("[ERROR] The prepared statement \"" + tokens.get(1) + "\" takes " + plan.getPlaceholders() + " values.");
+            return;
+        }
+        for (String value : values) {
+            if (!Parser.isValue(value)) {
+                runParser(plan.bind(values), session.getFileReading(), writer);
+                return;
+            }
+        }
+        if (!runPlan(plan, values, session.getFileReading(), writer)) {
+            runParser(plan.bind(values), session.getFileReading(), writer);
+        }
+    }
+
+    private void deallocate(ArrayList<String> tokens, Session session, Writer writer) throws IOException {
+        if (tokens.size() != 3 || !tokens.get(2).equals(";")) {
+            writer.write("[ERROR] Expected DEALLOCATE [StatementName];");
+            return;
+        }
+        if (!session.removePrepared(tokens.get(1))) {
+            writer.write("[ERROR] The prepared statement \"" + tokens.get(1) + "\" does not exist.");
+            return;
         }
-        return msg;
+        writer.write("[OK]");
     }
 
-    private void updateErrorMessage(String msg) {
+    private void showStats(ArrayList<String> tokens, Writer writer) throws IOException {
+        if (tokens.size() != 3 || !tokens.get(1).equalsIgnoreCase("STATS") || !tokens.get(2).equals(";")) {
+            writer.write("[ERROR] Expected SHOW STATS;");
+            return;
+        }
+        writer.write("[OK]\n");
+        metrics.writeTo(writer);
+    }
+
+    private String updateErrorMessage(String errorMessage, String msg) {
         if (errorMessage.length() == 0 && msg.length() > 0) {
-            errorMessage = " " + msg;
+            return " " + msg;
         }
+        return errorMessage;
+    }
+
+    public Session newSession() {
+        return new Session(new FileReading(storageFolderPath, tableCache, walManager, lockManager));
+    }
+
+    /**
+     * Checkpoints every write-ahead log, writes back every table still dirty in the cache and finishes
+     * writing the slow query log.
+     */
+    public void close() {
+        walManager.close();
+        slowQueryLog.close();
     }
 
 
@@ -93,6 +309,7 @@ public class DBServer {
 
 
 
+
 
 
     //----------------------------------------------------------------------------------------------------//
@@ -122,11 +339,60 @@ public class DBServer {
             while (!Thread.interrupted()) {
                 String incomingCommand = reader.readLine();
                 System.out.println("Received message: " + incomingCommand);
-                String result = handleCommand(incomingCommand);
-                writer.write(result);
+                handleCommand(incomingCommand, session, writer);
+                writer.write("\n" + END_OF_TRANSMISSION + "\n");
+                writer.flush();
+            }
+        }
+    }
+
+    // Virtual threads only exist from Java 21 onwards, so fall back to a cached pool on older runtimes.
+    private ExecutorService newConnectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void concurrentListenOn(int portNumber) throws IOException {
+        ExecutorService executor = newConnectionExecutor();
+        try (ServerSocket s = new ServerSocket(portNumber)) {
+            System.out.println("Server listening on port " + portNumber);
+            while (!Thread.interrupted()) {
+                try {
+                    Socket socket = s.accept();
+                    executor.execute(() -> concurrentHandleConnection(socket));
+                } catch (IOException e) {
+                    System.err.println("Server encountered a non-fatal IO error:");
+                    e.printStackTrace();
+                    System.err.println("Continuing...");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void concurrentHandleConnection(Socket socket) {
+        Session connectionSession = newSession();
+        try (Socket s = socket;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream()));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()))) {
+
+            System.out.println("Connection established: " + s.getInetAddress());
+            String incomingCommand;
+            while (!Thread.interrupted() && (incomingCommand = reader.readLine()) != null) {
+                System.out.println("Received message: " + incomingCommand);
+                handleCommand(incomingCommand, connectionSession, writer);
                 writer.write("\n" + END_OF_TRANSMISSION + "\n");
                 writer.flush();
             }
+        } catch (IOException e) {
+            System.err.println("Connection closed after an IO error: " + e.getMessage());
+        } finally {
+            connectionSession.close();
         }
     }
 }
@@ -1,27 +1,218 @@
 package edu.uob;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 public class FileReading {
+    // Set to "columnar" to store tables in the binary .col format; .tab files are still read either way.
+    public static final String FORMAT_PROPERTY = "db.storage.format";
+    // Each table's CREATE INDEX definitions, one "name<TAB>attribute" line per index.
+    public static final String INDEX_EXTENSION = ".idx";
+    // The folder LOAD reads files from; nothing outside it can be loaded.
+    public static final String IMPORT_PROPERTY = "db.import.dir";
+    // Added to a file's name while its new contents are being written.
+    public static final String TEMPORARY_EXTENSION = ".tmp";
     private String  storageFolderPath;
+    private TableCache tableCache;
+    private WalManager walManager;
+    private LockManager lockManager;
+    // The locks the current statement or transaction holds, by table or database key, in the order they were taken.
+    private LinkedHashMap<String, Lock> held = new LinkedHashMap<>();
+    // The tables this session has locked exclusively, which are pinned in the cache until they are unlocked.
+    private ArrayList<String> pinned = new ArrayList<>();
+    // The commit the current read-only statement sees every table as of, or -1 if it has none.
+    private long snapshot = -1;
+    private boolean transaction = false;
+    // Tables the open transaction has changed, by cache key, which no other session can see until COMMIT.
+    private LinkedHashMap<String, Table> pending = new LinkedHashMap<>();
+    // Id counters the open transaction has changed, by cache key, kept back with its tables.
+    private LinkedHashMap<String, String> pendingConfigs = new LinkedHashMap<>();
+    private ArrayList<String> rewritten = new ArrayList<>();
+    // Row changes waiting for commit, by database folder.
+    private LinkedHashMap<String, ArrayList<WriteAheadLog.Record>> uncommitted = new LinkedHashMap<>();
+    // Where the bytes this session reads and writes are counted; set by the server for each statement.
+    private Metrics.Trace trace = new Metrics.Trace();
+
     public FileReading(String currentPath) {
+        this(currentPath, new TableCache());
+    }
+
+    public FileReading(String currentPath, TableCache sharedCache) {
+        this(currentPath, sharedCache, new WalManager(sharedCache));
+    }
+
+    public FileReading(String currentPath, TableCache sharedCache, WalManager sharedWalManager) {
+        this(currentPath, sharedCache, sharedWalManager, new LockManager());
+    }
+
+    public FileReading(String currentPath, TableCache sharedCache, WalManager sharedWalManager, LockManager sharedLockManager) {
         storageFolderPath = currentPath;
+        tableCache = sharedCache;
+        walManager = sharedWalManager;
+        lockManager = sharedLockManager;
+    }
+
+    /**
+     * Locks a table of the current database exclusively until unlockAll(). A statement that only reads
+     * takes no table lock: it opens a snapshot instead, so it neither waits for writers nor holds
+     * them up, and sees every table as of the same commit. Returns false if the lock could not be
+     * had in time, which is how two transactions waiting on each other's tables get out.
+     */
+    public boolean lockTable(String name, boolean exclusive) {
+        if (!lock(storageFolderPath, false)) return false;
+        if (!exclusive) {
+            if (snapshot < 0) snapshot = tableCache.openSnapshot();
+            return true;
+        }
+        String key = TableCache.key(storageFolderPath, name);
+        if (held.containsKey(key)) return true;
+        if (!lock(key, true)) return false;
+        tableCache.pin(key);
+        pinned.add(key);
+        return true;
+    }
+
+    /** Locks a whole database exclusively until unlockAll(); returns false if it is still in use. */
+    public boolean lockDatabase(String name) {
+        return lock(getRootPath() + File.separator + name.toLowerCase(), true);
+    }
+
+    private boolean lock(String key, boolean exclusive) {
+        if (held.containsKey(key)) return true;
+        Lock lock = lockManager.tryLock(key, exclusive);
+        if (lock == null) return false;
+        held.put(key, lock);
+        return true;
+    }
+
+    /**
+     * Releases every lock the statement took, newest first, and closes its snapshot. Inside a
+     * transaction the locks are kept until COMMIT or ROLLBACK.
+     */
+    public void unlockAll() {
+        if (snapshot >= 0) {
+            tableCache.closeSnapshot(snapshot);
+            snapshot = -1;
+        }
+        if (transaction) return;
+        for (String key : pinned) {
+            tableCache.unpin(key);
+        }
+        pinned.clear();
+        ArrayList<Lock> locks = new ArrayList<>(held.values());
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+        held.clear();
+    }
+
+    public boolean inTransaction() {
+        return transaction;
+    }
+
+    /** Starts buffering this session's changes; returns false if a transaction is already open. */
+    public boolean beginTransaction() {
+        if (transaction) return false;
+        transaction = true;
+        return true;
+    }
+
+    /**
+     * Publishes every table the transaction changed and logs all of its row changes with one append
+     * per database, then waits for them to be on disk. Sessions committing at the same moment share
+     * a single fsync. Returns false if any of it could not be written or synced.
+     */
+    public boolean commitTransaction() {
+        transaction = false;
+        boolean durable = true;
+        HashSet<String> checkpointed = new HashSet<>();
+        for (String key : rewritten) {
+            String databasePath = new File(key).getParent();
+            if (checkpointed.add(databasePath)) durable &= walManager.checkpoint(databasePath);
+        }
+        for (Map.Entry<String, Table> entry : pending.entrySet()) {
+            tableCache.put(entry.getKey(), entry.getValue(), true);
+        }
+        pending.clear();
+        for (Map.Entry<String, String> entry : pendingConfigs.entrySet()) {
+            if (!tableCache.putConfig(entry.getKey(), entry.getValue(), true)) {
+                durable &= writeConfig(entry.getKey(), entry.getValue());
+            }
+        }
+        pendingConfigs.clear();
+        durable &= flushRewritten();
+        durable &= appendUncommitted();
+        durable &= awaitUncommitted();
+        uncommitted.clear();
+        rewritten.clear();
+        return durable;
+    }
+
+    /** Throws away everything the transaction changed. */
+    public void rollbackTransaction() {
+        transaction = false;
+        pending.clear();
+        pendingConfigs.clear();
+        rewritten.clear();
+        uncommitted.clear();
     }
 
     public String getRootPath() {
         return Paths.get("databases").toAbsolutePath().toString();
     }
 
+    public static Path getImportPath() {
+        return Paths.get(System.getProperty(IMPORT_PROPERTY, "imports")).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Finds a file named by LOAD in the import folder. Returns null for an absolute path, or one that
+     * uses ".." or a link to reach outside the folder, since clients must not read the server's files.
+     */
+    public static File findImportFile(String name) {
+        Path folder = getImportPath();
+        Path relative = Paths.get(name);
+        if (relative.isAbsolute() || relative.getRoot() != null) return null;
+        for (Path part : relative) {
+            if (part.toString().equals("..")) return null;
+        }
+        Path file = folder.resolve(relative).normalize();
+        if (!file.startsWith(folder)) return null;
+        try {
+            if (file.toFile().exists() && !file.toRealPath().startsWith(folder.toRealPath())) return null;
+        } catch (IOException e) {
+            return null;
+        }
+        return file.toFile();
+    }
+
+    public Metrics.Trace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(Metrics.Trace newTrace) {
+        trace = newTrace;
+    }
+
     public String getCurrentPath() {
         return storageFolderPath;
     }
 
     public boolean deleteDatabase(String name) {
-        String databaseName = getRootPath() + File.separator + name;
+        String databaseName = getRootPath() + File.separator + name.toLowerCase();
+        walManager.forget(databaseName);
+        tableCache.invalidateDatabase(databaseName);
         File dir = new File(databaseName);
         File[] contents = dir.listFiles();
         if (contents != null) {
@@ -38,7 +229,7 @@ public class FileReading {
 
 
     public void changePath(String name) {
-        storageFolderPath = getRootPath() + File.separator + name;
+        storageFolderPath = getRootPath() + File.separator + name.toLowerCase();
     }
 
     public boolean createFolder(String name) {
@@ -58,24 +249,65 @@ public class FileReading {
         name = name.toLowerCase();
         String filename = this.storageFolderPath + File.separator + name + ".tab";
         File f = new File(filename);
-        return f.exists();
+        String key = TableCache.key(storageFolderPath, name);
+        return f.exists() || new File(key + ColumnarFormat.EXTENSION).exists() || tableCache.contains(key) || pending.containsKey(key);
     }
 
     public void deleteFile(String name) {
         name = name.toLowerCase();
         String fileName = this.storageFolderPath + File.separator + name;
+        if (name.endsWith(".tab")) {
+            String key = fileName.substring(0, fileName.length() - ".tab".length());
+            // Checkpoint first so the dropped table's log records can never be replayed into a new one.
+            walManager.checkpoint(storageFolderPath);
+            tableCache.invalidate(key);
+            new File(key + ColumnarFormat.EXTENSION).delete();
+            new File(key + INDEX_EXTENSION).delete();
+        }
         File fileOpened = new File(fileName);
         fileOpened.delete();
     }
 
     public Table readFileToTable(String name) {
         name = name.toLowerCase();
-        String fileName = this.storageFolderPath + File.separator + name + ".tab";
-        File fileOpened = new File(fileName);
+        String key = TableCache.key(storageFolderPath, name);
+        if (pending.containsKey(key)) {
+            return pending.get(key).duplicate();
+        }
+        if (snapshot >= 0) {
+            Table cached = tableCache.get(key, snapshot);
+            if (cached != null) return cached;
+            // Tables changed since the snapshot opened stay resident, and so do tables a writer has locked,
+            // so the file is what the snapshot sees; files are replaced whole, so it is never half written.
+            // If a writer committed while the file was read, its older version is the one to use.
+            Table loaded = loadTable(name, key);
+            cached = tableCache.get(key, snapshot);
+            return cached != null ? cached : loaded;
+        }
+        Table cached = tableCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return loadTable(name, key);
+    }
+
+    private Table loadTable(String name, String key) {
         Table table = new Table(name);
-        try {
-            FileReader reader = new FileReader(fileOpened);
-            BufferedReader buffReader = new BufferedReader(reader);
+        File columnar = new File(key + ColumnarFormat.EXTENSION);
+        if (columnar.exists()) {
+            try {
+                table = ColumnarFormat.read(columnar, name);
+            } catch (IOException e) {
+                System.out.println("Could not open file.");
+                return table;
+            }
+            trace.addBytesRead(columnar.length());
+            readIndexes(key, table);
+            tableCache.put(key, table, false);
+            return table.duplicate();
+        }
+        File fileOpened = new File(key + ".tab");
+        try (BufferedReader buffReader = new BufferedReader(new FileReader(fileOpened))) {
             String line;
             int lineIndex = 0;
             while ((line = buffReader.readLine()) != null && line.length() > 0) {
@@ -84,9 +316,45 @@ public class FileReading {
             }
         } catch (IOException e){
             System.out.println("Could not open file.");
+            return table;
         }
+        trace.addBytesRead(fileOpened.length());
+        readIndexes(key, table);
+        tableCache.put(key, table, false);
+        return table.duplicate();
+    }
+
+    // Only the definitions are stored; the trees are built again the first time a query needs them.
+    private void readIndexes(String key, Table table) {
+        File indexFile = new File(key + INDEX_EXTENSION);
+        if (!indexFile.exists()) return;
+        trace.addBytesRead(indexFile.length());
+        try (BufferedReader buffReader = new BufferedReader(new FileReader(indexFile))) {
+            String line;
+            while ((line = buffReader.readLine()) != null) {
+                String[] definition = line.trim().split("\t");
+                if (definition.length == 2 && table.existsField(definition[1])) {
+                    table.addIndex(definition[0], definition[1]);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not open file.");
+        }
+    }
 
-        return table;
+    private static void writeIndexes(String key, Table table) throws IOException {
+        File indexFile = new File(key + INDEX_EXTENSION);
+        if (table.getIndexes().size() == 0) {
+            indexFile.delete();
+            return;
+        }
+        File temporary = new File(key + INDEX_EXTENSION + TEMPORARY_EXTENSION);
+        try (FileWriter writer = new FileWriter(temporary)) {
+            for (TableIndex index : table.getIndexes()) {
+                writer.write(index.getName() + "\t" + index.getAttribute() + "\n");
+            }
+        }
+        replace(temporary, indexFile);
     }
 
     private void processLine(String line, Table table, int index) {
@@ -107,44 +375,187 @@ public class FileReading {
 
     public String readConfig(String name) {
         name = name.toLowerCase();
-        String fileName = this.storageFolderPath + File.separator + name + ".info";
-        File fileOpened = new File(fileName);
-        try {
-            FileReader reader = new FileReader(fileOpened);
-            BufferedReader buffReader = new BufferedReader(reader);
+        String key = TableCache.key(storageFolderPath, name);
+        if (pendingConfigs.containsKey(key)) {
+            return pendingConfigs.get(key);
+        }
+        String cached = tableCache.getConfig(key);
+        if (cached != null) {
+            return cached;
+        }
+        String config = "0";
+        try (BufferedReader buffReader = new BufferedReader(new FileReader(key + ".info"))) {
             String line;
             if ((line = buffReader.readLine()) != null && line.length() > 0) {
-                return line.trim();
+                config = line.trim();
             }
         } catch (IOException e){
             System.out.println("Could not open file.");
         }
-        return "0";
+        tableCache.putConfig(key, config, false);
+        return config;
     }
 
+    // While the table is resident the counter only changes in memory and is written back with it.
+    // Inside a transaction it is kept back until COMMIT, like the table.
     public void writeConfigToFile(String name, String config) {
-        name = name.toLowerCase();
-        String fileName = this.storageFolderPath + File.separator + name + ".info";
-        File fileOpened = new File(fileName);
+        String key = TableCache.key(storageFolderPath, name);
+        if (transaction) {
+            pendingConfigs.put(key, config);
+        } else if (!tableCache.putConfig(key, config, true)) {
+            writeConfig(key, config);
+        }
+    }
+
+    /** Writes the id counter to key.info; returns false if it could not be written. */
+    public static boolean writeConfig(String key, String config) {
+        File fileOpened = new File(key + ".info");
+        File temporary = new File(key + ".info" + TEMPORARY_EXTENSION);
         try {
-            FileWriter writer = new FileWriter(fileOpened);
-            writer.write(config);
-            writer.flush();
-            writer.close();
+            try (FileWriter writer = new FileWriter(temporary)) {
+                writer.write(config);
+            }
+            replace(temporary, fileOpened);
         } catch (IOException e) {
             System.out.println("Could not open file.");
+            return false;
         }
+        syncFolder(fileOpened.getParentFile());
+        return true;
     }
 
 
     public void writeTableToFile(Table table) {
-        String fileName = this.storageFolderPath + File.separator + table.getName() + ".tab";
-        File fileOpened = new File(fileName);
+        writeTableToFile(table, null);
+    }
+
+    /**
+     * Puts the statement's result in the cache. With a list of row changes these are logged on
+     * commit() and the table file is only rewritten by a later checkpoint; without one (CREATE,
+     * ALTER) the whole table is written out on commit(). Inside a transaction the table is kept
+     * back for this session until COMMIT.
+     */
+    public void writeTableToFile(Table table, ArrayList<WriteAheadLog.Record> changes) {
+        String key = TableCache.key(storageFolderPath, table.getName());
+        if (transaction) {
+            pending.put(key, table);
+        } else if (changes == null) {
+            walManager.checkpoint(storageFolderPath);
+            tableCache.put(key, table, true);
+        } else {
+            tableCache.put(key, table, true);
+        }
+        if (changes == null) {
+            if (!rewritten.contains(key)) rewritten.add(key);
+        } else {
+            uncommitted.computeIfAbsent(storageFolderPath, path -> new ArrayList<>()).addAll(changes);
+        }
+    }
+
+    /**
+     * Makes the statement's changes durable, unless a transaction is open, which COMMIT does instead.
+     * Like COMMIT, it waits for the log records to be synced, sharing the fsync with any other
+     * statements committing at the same moment, so a statement that replies [OK] survives a crash.
+     * Returns false if they could not be written.
+     */
+    public boolean commit() {
+        if (transaction) return true;
+        boolean durable = flushRewritten();
+        durable &= appendUncommitted();
+        durable &= awaitUncommitted();
+        uncommitted.clear();
+        return durable;
+    }
+
+    private boolean awaitUncommitted() {
+        boolean synced = true;
+        for (String databasePath : uncommitted.keySet()) {
+            synced &= walManager.awaitSync(databasePath);
+        }
+        return synced;
+    }
+
+    private boolean appendUncommitted() {
+        boolean appended = true;
+        for (Map.Entry<String, ArrayList<WriteAheadLog.Record>> entry : uncommitted.entrySet()) {
+            if (entry.getValue().size() == 0) continue;
+            long written = walManager.append(entry.getKey(), entry.getValue());
+            if (written < 0) {
+                appended = false;
+            } else {
+                trace.addBytesWritten(written);
+            }
+        }
+        return appended;
+    }
+
+    // A table rewritten whole already holds its logged row changes, so those are not logged again.
+    private boolean flushRewritten() {
+        boolean flushed = true;
+        for (String key : rewritten) {
+            flushed &= tableCache.flush(key);
+            trace.addBytesWritten(new File(key + ".tab").length() + new File(key + ColumnarFormat.EXTENSION).length()
+                    + new File(key + INDEX_EXTENSION).length());
+            String databasePath = new File(key).getParent();
+            String name = new File(key).getName();
+            ArrayList<WriteAheadLog.Record> records = uncommitted.get(databasePath);
+            if (records != null) records.removeIf(record -> record.getTable().equalsIgnoreCase(name));
+        }
+        rewritten.clear();
+        return flushed;
+    }
+
+    private static boolean useColumnar() {
+        return System.getProperty(FORMAT_PROPERTY, "tab").equalsIgnoreCase("columnar");
+    }
+
+    /**
+     * Writes a table to key.tab or key.col, depending on the configured format, and removes the other.
+     * Its index definitions go to key.idx. Each file is written in full to a temporary file, forced
+     * to disk and renamed over the old one, and the folder is synced last, so that a crash leaves
+     * either the old table or the new one, never a torn one. Returns false if anything could not be
+     * written, in which case the old files are left as they were.
+     */
+    public static boolean writeTable(String key, Table table) {
+        File tabFile = new File(key + ".tab");
+        File columnarFile = new File(key + ColumnarFormat.EXTENSION);
         try {
-            FileWriter writer = new FileWriter(fileOpened);
-            table.writeToFile(writer);
+            if (useColumnar()) {
+                File temporary = new File(key + ColumnarFormat.EXTENSION + TEMPORARY_EXTENSION);
+                ColumnarFormat.write(temporary, table);
+                replace(temporary, columnarFile);
+                tabFile.delete();
+            } else {
+                File temporary = new File(key + ".tab" + TEMPORARY_EXTENSION);
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(temporary))) {
+                    table.writeTo(writer);
+                }
+                replace(temporary, tabFile);
+                columnarFile.delete();
+            }
+            writeIndexes(key, table);
         } catch (IOException e) {
             System.out.println("Could not open file.");
+            return false;
+        }
+        syncFolder(tabFile.getParentFile());
+        return true;
+    }
+
+    // Forces a fully written temporary file to disk, then renames it over target in one step.
+    static void replace(File temporary, File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Makes the renames and deletions in a folder durable.
+    static void syncFolder(File folder) {
+        try (FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open a folder; renames there are atomic but may not be synced yet.
         }
     }
 }
@@ -1,32 +1,39 @@
 package edu.uob;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 public class Interpreter {
-    private int localLevel;
-    private int attrIndex;
     private String config;
-    private String value;
     private Table intermediary;
     private Table joinTable;
     private Table original = new Table("original");
-    private Table shiftTable = new Table("shiftTable");
-    private Table saved = new Table("saved");
-    private ArrayList<ArrayList<Table>> conditionTables = new ArrayList<>();
+    private Condition savedCondition;
+    private ArrayList<ArrayList<Condition>> conditions = new ArrayList<>();
     private ArrayList<ArrayList<BooleanOperator>> operatorTables = new ArrayList<>();
     private ArrayList<Integer> conditionLevel = new ArrayList<>();
     private boolean parsing = false;
-    private boolean isStrLit = false;
     private ArrayList<String> query = new ArrayList<>();
     private FileReading fileReading;
     private Boolean interpretable = false;
     private String errorMessage = "";
+    private ArrayList<WriteAheadLog.Record> changes = new ArrayList<>();
+    private boolean rewrite = false;
+    // Set for statements that change a table, so the tables they use are locked exclusively.
+    private boolean exclusive = false;
+    // Set when a step failed in a way a full parse would only repeat or make worse: a lock another
+    // transaction held, or changes that could not be made durable.
+    private boolean failedFinally = false;
+    private long rowsScanned = 0;
+    private int comparisons = 0;
+    private ArrayList<long[]> joins = new ArrayList<>();
     public Interpreter(FileReading initFileReading) {
         fileReading = initFileReading;
     }
@@ -53,6 +60,10 @@ public class Interpreter {
     public void setParsing() {
         parsing = true;
     }
+
+    public void setExclusive() {
+        exclusive = true;
+    }
     public void clearMessage() {
         errorMessage = "";
     }
@@ -67,32 +78,45 @@ public class Interpreter {
         return errorMessage;
     }
 
-    public boolean getInterpretable() {
-        return interpretable;
+    public boolean isFailedFinally() {
+        return failedFinally;
     }
 
-    private void shiftColumn(int from, int to) {
-        String newField = intermediary.getFields().get(from);
-        shiftTable.changeField(to, newField);
-        for (int i = 0; i < intermediary.getNumberOfRows(); i++) {
-            String value = intermediary.getRows().get(i).getValue(from);
-            shiftTable.getRows().get(i).changeValue(to, value);
-        }
+    public boolean getInterpretable() {
+        return interpretable;
     }
 
+    // Picks the selected columns out as a view on intermediary rather than copying them into a new table.
+    // A column already in place is kept even if an earlier column has the same name.
     public void specifyQuery() {
         if (parsing) return;
-        shiftTable.copy(intermediary, true);
+        int[] columns = new int[query.size()];
         for (int i = 0; i < query.size(); i++) {
-            String attr = query.get(i);
-            String[] attrCompound = query.get(i).split("\\.");
-            if (attrCompound.length == 2) attr = attrCompound[1];
-            if (!intermediary.getFields().get(i).equalsIgnoreCase(attr)) {
-                shiftColumn(intermediary.getFieldIndex(attr), i);
+            String attr = getAttribute(query.get(i));
+            if (i < intermediary.getNumberOfFields() && intermediary.getFieldName(i).equalsIgnoreCase(attr)) {
+                columns[i] = i;
+            } else {
+                columns[i] = intermediary.getFieldIndex(attr);
             }
         }
-        shiftTable.removeColumnsAfter(query.size());
-        intermediary.copy(shiftTable, false);
+        intermediary.project(columns);
+    }
+
+    // The row changes this statement made, or null when the whole table has to be rewritten.
+    public ArrayList<WriteAheadLog.Record> getChanges() {
+        return rewrite ? null : changes;
+    }
+
+    /**
+     * Adds what this statement did to the trace: the rows in every table it read before any condition
+     * was applied, the comparisons in its WHERE clause, and the sizes of each join.
+     */
+    public void recordTo(Metrics.Trace trace) {
+        trace.addRowsScanned(rowsScanned);
+        trace.addComparisons(comparisons);
+        for (long[] join : joins) {
+            trace.addJoin(join[0], join[1], join[2]);
+        }
     }
 
     public Table execute(boolean write) {
@@ -126,6 +150,7 @@ public class Interpreter {
 
     public boolean alterTable(String alterationType, String attributeName) {
         if (parsing) return true;
+        rewrite = true;
         if (alterationType.equalsIgnoreCase("DROP")) {
             return alterDrop(attributeName);
         }
@@ -134,10 +159,12 @@ public class Interpreter {
 
     public boolean createTable(String name) {
         if (parsing) return true;
+        if (!lockTable(name, true)) return false;
         if (!fileReading.doesTableExist(name)) {
             if (!fileReading.getCurrentPath().equals(fileReading.getRootPath())) {
                 intermediary = new Table(name.toLowerCase());
                 config = "0";
+                rewrite = true;
                 return true;
             }
             updateErrorMessage("You have not selected a [DatabaseName] to use yet.");
@@ -146,11 +173,88 @@ public class Interpreter {
         return false;
     }
 
+    public boolean createIndex(String name, String attributeName) {
+        if (parsing) return true;
+        if (!checkAttrExists(attributeName, intermediary)) return false;
+        if (intermediary.getIndex(name) != null) {
+            updateErrorMessage("The index \"" + name + "\" already exists on the table \"" + intermediary.getName() + "\".");
+            return false;
+        }
+        String attr = intermediary.getRealField(getAttribute(attributeName));
+        intermediary.addIndex(name, attr);
+        // Build it now, so that the first query does not pay for it.
+        intermediary.getIndexOn(intermediary.getFieldIndex(attr));
+        rewrite = true;
+        return true;
+    }
+
+    public boolean dropIndex(String name) {
+        if (parsing) return true;
+        if (!intermediary.removeIndex(name)) {
+            updateErrorMessage("Cannot drop index \"" + name + "\" as it does not exist on the table \"" + intermediary.getName() + "\".");
+            return false;
+        }
+        rewrite = true;
+        return true;
+    }
+
+    // A transaction that cannot get a lock is rolled back, so that it lets go of the locks it holds
+    // rather than keep another transaction waiting on them, and cannot commit half of its changes.
+    private boolean lockTable(String name, boolean exclusiveLock) {
+        if (fileReading.lockTable(name, exclusiveLock)) return true;
+        failedFinally = true;
+        if (fileReading.inTransaction()) {
+            fileReading.rollbackTransaction();
+            updateErrorMessage("The table \"" + name + "\" is locked by another transaction, so this transaction was rolled back.");
+            return false;
+        }
+        updateErrorMessage("The table \"" + name + "\" is locked by another transaction.");
+        return false;
+    }
+
+    public boolean beginTransaction() {
+        if (parsing) return true;
+        if (fileReading.beginTransaction()) return true;
+        updateErrorMessage("A transaction is already in progress.");
+        return false;
+    }
+
+    public boolean commitTransaction() {
+        if (parsing) return true;
+        if (!fileReading.inTransaction()) {
+            updateErrorMessage("There is no transaction in progress.");
+            return false;
+        }
+        if (fileReading.commitTransaction()) return true;
+        failedFinally = true;
+        updateErrorMessage("The transaction could not be written to disk.");
+        return false;
+    }
+
+    public boolean rollbackTransaction() {
+        if (parsing) return true;
+        if (!fileReading.inTransaction()) {
+            updateErrorMessage("There is no transaction in progress.");
+            return false;
+        }
+        fileReading.rollbackTransaction();
+        return true;
+    }
+
     public boolean dropDatabase(String name) {
         if (parsing) return true;
+        if (fileReading.inTransaction()) {
+            updateErrorMessage("Cannot drop a [DatabaseName] inside a transaction.");
+            return false;
+        }
+        if (!fileReading.lockDatabase(name)) {
+            failedFinally = true;
+            updateErrorMessage("Cannot drop [DatabaseName] \"" + name + "\" while it is in use.");
+            return false;
+        }
         if (fileReading.doesDatabaseExist(name)) {
             if (fileReading.deleteDatabase(name)) {
-                if (fileReading.getCurrentPath().equals(fileReading.getRootPath() + File.separator + name)) {
+                if (fileReading.getCurrentPath().equals(fileReading.getRootPath() + File.separator + name.toLowerCase())) {
                     fileReading.setPathRoot();
                 }
                 return true;
@@ -163,6 +267,11 @@ public class Interpreter {
 
     public boolean dropTable(String name) {
         if (parsing) return true;
+        if (fileReading.inTransaction()) {
+            updateErrorMessage("Cannot drop a table inside a transaction.");
+            return false;
+        }
+        if (!lockTable(name, true)) return false;
         if (fileReading.doesTableExist(name)) {
             fileReading.deleteFile(name + ".info");
             fileReading.deleteFile(name + ".tab");
@@ -195,23 +304,22 @@ public class Interpreter {
     public boolean specifyUpdate(ArrayList<String> nameValueList) {
         if (parsing) return true;
         if (!checkNameValueList(nameValueList)) return false;
+        int pairs = nameValueList.size() / 2;
+        int[] fieldIndexes = new int[pairs];
+        String[] values = new String[pairs];
+        for (int i = 0; i < pairs; i++) {
+            fieldIndexes[i] = intermediary.getFieldIndex(nameValueList.get(i * 2));
+            String value = capitaliseKeyword(nameValueList.get((i * 2) + 1));
+            values[i] = value.replaceAll("^'|'$", "");
+        }
+        // Look each matched row up by id rather than scanning the whole of original for it.
         for (int row = 0; row < intermediary.getNumberOfRows(); row++) {
-            for (int j = 0; j < original.getNumberOfRows(); j++) {
-                boolean skip = false;
-                for (int i = 0; i < nameValueList.size() / 2; i++) {
-                    int fieldIndex = intermediary.getFieldIndex(nameValueList.get(i * 2));
-                    String value = nameValueList.get((i * 2) + 1);
-                    value = capitaliseKeyword(value);
-                    value = value.replaceAll("^'|'$", "");
-                    String originalID = original.getRows().get(j).getValue(0);
-                    String intermediaryID = intermediary.getRows().get(row).getValue(0);
-                    if (originalID.equals(intermediaryID)) {
-                        original.changeRow(j, fieldIndex, value);
-                        skip = true;
-                    }
-                }
-                if (skip) j = original.getNumberOfRows();
+            Row target = original.getRowById(intermediary.getRows().get(row).getValue(0));
+            if (target == null) continue;
+            for (int i = 0; i < pairs; i++) {
+                original.changeRow(target, fieldIndexes[i], values[i]);
             }
+            logChange(WriteAheadLog.Type.UPDATE, target);
         }
         intermediary.copy(original, false);
         return true;
@@ -220,15 +328,14 @@ public class Interpreter {
 
     public void specifyDelete() {
         if (parsing) return;
-        for (int i = 0; i < original.getNumberOfRows(); i++) {
-            for (int j = 0; j < intermediary.getNumberOfRows(); j++) {
-                String originalID = original.getRows().get(i).getValue(0);
-                String intermediaryID = intermediary.getRows().get(j).getValue(0);
-                if (originalID.equals(intermediaryID)) {
-                    original.removeRows(i);
-                }
-            }
+        HashSet<String> ids = new HashSet<>();
+        for (int i = 0; i < intermediary.getNumberOfRows(); i++) {
+            ids.add(intermediary.getRows().get(i).getValue(0));
+        }
+        for (String id : ids) {
+            changes.add(new WriteAheadLog.Record(WriteAheadLog.Type.DELETE, intermediary.getName(), new ArrayList<>(Arrays.asList(id))));
         }
+        original.removeRowsById(ids);
         intermediary.copy(original, false);
     }
 
@@ -237,39 +344,13 @@ public class Interpreter {
         this.query = newQuery;
     }
 
-    private Table union(Table table1, Table table2) {
-
-        Table newTable = new Table("resultOfOR");
-        newTable.copy(table1, true);
-        for (int i = 0; i < table2.getNumberOfRows(); i++) {
-            boolean add = true;
-            for (int j = 0; j < table1.getNumberOfRows(); j++) {
-                if (table1.getRows().get(j).getValue(0).equals(table2.getRows().get(i).getValue(0))) {
-                    add = false;
-                    break;
-                }
-            }
-            if (add) newTable.addRows(table2.getRow(i));
-        }
-        return newTable;
-    }
-
-    private Table discriminate(Table table1, Table table2) {
-        Table newTable = new Table("resultOfAND");
-        newTable.addFields(table1.getFields(), true);
-        for (int i = 0; i < table1.getNumberOfRows(); i++) {
-            for (int j = 0; j < table2.getNumberOfRows(); j++) {
-                if (table1.getRows().get(i).getValue(0).equals(table2.getRows().get(j).getValue(0))) {
-                    newTable.addRows(table1.getRow(i));
-                }
-            }
-        }
-        return newTable;
-    }
-
     public void updateIntermediary() {
         if (parsing) return;
-        intermediary.copy(saved, true);
+        if (savedCondition == null) {
+            intermediary.copy(new Table("saved"), true);
+            return;
+        }
+        Condition.filter(intermediary, savedCondition);
     }
 
 
@@ -277,52 +358,53 @@ public class Interpreter {
     // e.g. (a==1 AND (b==2 AND (c==3 AND d==4))) AND (e==5)
     // _________________________________________^___________
     // at this point this function will collapse the readable material (what is to the left of that point).
-    // This readable material will collapse into a conditionLevelTable at level 0 and index 0.
-    // Therefore, it will be impossible to mix condition tables which are separated (such as a==1 and e==5).
+    // This readable material will collapse into a single condition at level 0 and index 0.
+    // Therefore, it will be impossible to mix conditions which are separated (such as a==1 and e==5).
+    // Nothing is evaluated here; the tree is only run against the rows in updateIntermediary.
 
     // always condense upon seeing a closed bracket.
 
     public void condenseQuery() {
         if (parsing) return;
-        int levelIndex = conditionTables.size() - 1;
+        int levelIndex = conditions.size() - 1;
 
-        // Initialise the table.
-        Table table = conditionTables.get(levelIndex).get(0);
+        // Initialise the condition.
+        Condition condition = conditions.get(levelIndex).get(0);
 
         // only perform the AND / OR operation if an operation has been saved at that level.
         if (operatorTables.size() > levelIndex) {
-            table = calculateComparison(levelIndex, table);
+            condition = calculateComparison(levelIndex, condition);
         }
 
-        // remove tables from the ArrayList which have used.
-        cleanLevelTables(levelIndex, table);
+        // remove conditions from the ArrayList which have been used.
+        cleanLevelConditions(levelIndex, condition);
     }
 
-    private Table calculateComparison(int levelIndex, Table table) {
+    private Condition calculateComparison(int levelIndex, Condition condition) {
         ArrayList<BooleanOperator> booleanOperators = operatorTables.get(levelIndex);
-        ArrayList<Table> tableLevel = conditionTables.get(levelIndex);
+        ArrayList<Condition> conditionLevelList = conditions.get(levelIndex);
         for (int i = 0; i < booleanOperators.size(); i++) {
-            if (i + 1 < tableLevel.size()) {
+            if (i + 1 < conditionLevelList.size()) {
                 if (booleanOperators.get(i) == BooleanOperator.OR) {
-                    table = union(table, tableLevel.get(i + 1));
+                    condition = Condition.or(condition, conditionLevelList.get(i + 1));
                 }
                 else if (booleanOperators.get(i) == BooleanOperator.AND) {
-                    table = discriminate(table, tableLevel.get(i + 1));
+                    condition = Condition.and(condition, conditionLevelList.get(i + 1));
                 }
-                conditionTables.get(levelIndex).set(0, table);
+                conditions.get(levelIndex).set(0, condition);
             }
         }
         // this is a safe operation because we know operatorTables.size() > levelIndex.
         operatorTables.remove(levelIndex);
-        return table;
+        return condition;
     }
 
-    private void cleanLevelTables(int levelIndex, Table table) {
+    private void cleanLevelConditions(int levelIndex, Condition condition) {
         if (levelIndex > 0) {
-            cleanHighIndex(levelIndex, table);
+            cleanHighIndex(levelIndex, condition);
         }
         else if (levelIndex == 0) {
-            cleanZeroIndex(table);
+            cleanZeroIndex(condition);
         }
     }
 
@@ -330,31 +412,31 @@ public class Interpreter {
         return (operatorTables.size() <= index || operatorTables.get(index).size() == 0);
     }
 
-    private void cleanHighIndex(int levelIndex, Table table) {
-        conditionTables.remove(levelIndex);
+    private void cleanHighIndex(int levelIndex, Condition condition) {
+        conditions.remove(levelIndex);
         conditionLevel.remove(levelIndex);
-        conditionTables.get(levelIndex - 1).add(table);
-        if (conditionTables.get(levelIndex - 1).size() == 2 && detectOperators(levelIndex - 1)) {
+        conditions.get(levelIndex - 1).add(condition);
+        if (conditions.get(levelIndex - 1).size() == 2 && detectOperators(levelIndex - 1)) {
             // if there are no boolean operators left at the level below,
-            // and the conditionTable level has 2 tables, they should be added.
-            Table replacement = discriminate(table, conditionTables.get(levelIndex - 1).get(0));
-            conditionTables.get(levelIndex - 1).set(0, replacement);
-            conditionTables.get(levelIndex - 1).remove(1);
+            // and the level has 2 conditions, they should be combined.
+            Condition replacement = Condition.and(condition, conditions.get(levelIndex - 1).get(0));
+            conditions.get(levelIndex - 1).set(0, replacement);
+            conditions.get(levelIndex - 1).remove(1);
         }
     }
 
-    private void cleanZeroIndex(Table table) {
-        saved.copy(table, true);
-        conditionTables.get(0).set(0, table);
-        while (conditionTables.get(0).size() > 1) {
-            conditionTables.get(0).remove(1);
+    private void cleanZeroIndex(Condition condition) {
+        savedCondition = condition;
+        conditions.get(0).set(0, condition);
+        while (conditions.get(0).size() > 1) {
+            conditions.get(0).remove(1);
             conditionLevel.set(0, (conditionLevel.get(0) - 1));
         }
     }
 
     public void addOperator(String operator) {
         if (parsing) return;
-        for (int i = operatorTables.size(); i < conditionTables.size(); i++) {
+        for (int i = operatorTables.size(); i < conditions.size(); i++) {
             ArrayList<BooleanOperator> operatorList = new ArrayList<>();
             operatorTables.add(operatorList);
         }
@@ -371,26 +453,17 @@ public class Interpreter {
 
 
     private void addLevels(int level) {
-        for (int i = conditionTables.size(); i < level; i++) {
-            ArrayList<Table> tableLevel = new ArrayList<>();
-            conditionTables.add(tableLevel);
+        for (int i = conditions.size(); i < level; i++) {
+            ArrayList<Condition> conditionLevelList = new ArrayList<>();
+            conditions.add(conditionLevelList);
             conditionLevel.add(0);
-            Table table = new Table("conditionLevel" + i + ".0");
-            table.copy(intermediary, true);
-            conditionTables.get(i).add(table);
+            conditions.get(i).add(Condition.ALL);
         }
     }
 
     private void extendLevel(int level) {
         conditionLevel.set((level - 1), (conditionLevel.get(level - 1) + 1));
-        Table table = new Table("conditionLevel" + (level - 1));
-        table.copy(intermediary, true);
-        conditionTables.get(level - 1).add(table);
-    }
-
-    private int emptyTable(int i) {
-        conditionTables.get(localLevel).get(conditionLevel.get(localLevel)).removeRows(i);
-        return i - 1;
+        conditions.get(level - 1).add(Condition.ALL);
     }
 
     private String capitaliseKeyword(String newValue) {
@@ -400,26 +473,6 @@ public class Interpreter {
         return newValue;
     }
 
-    private boolean isSensibleCompare(String saved, String comparator, String value) {
-        if (isKeyword(saved) || isKeyword(value)) {
-            if (comparator.contains(">") || comparator.contains("<")) {
-                return false;
-            }
-        }
-        if (comparator.equalsIgnoreCase("LIKE") && !value.contains("'")) {
-            return false;
-        }
-        if (!saved.matches("^[+-]?[0-9]*\\.?[0-9]+$") && !value.matches("^'.*'$")) {
-            //System.out.println("first prevention, saved: " + saved + ", value: " + value);
-            return !(comparator.contains(">") || comparator.contains("<"));
-        }
-        if (saved.matches("^[+-]?[0-9]*\\.?[0-9]+$") && value.matches("^'.*'$")) {
-            //System.out.println("second prevention, saved: " + saved + ", value: " + value);
-            return !(comparator.contains(">") || comparator.contains("<"));
-        }
-        return true;
-    }
-
     public boolean addCondition(String attr, String comparator, String newValue, int level) {
         if (parsing) return true;
         if (!checkTableMatch(attr, intermediary)) return false;
@@ -427,174 +480,25 @@ public class Interpreter {
         newValue = capitaliseKeyword(newValue);
         if (intermediary.existsField(getAttribute(attr))) {
             attr = intermediary.getRealField(getAttribute(attr));
-            if (conditionTables.size() == level) {
+            if (conditions.size() == level) {
                 // extend this level because it has already been seen.
                 extendLevel(level);
-            } else if (conditionTables.size() < level) {
+            } else if (conditions.size() < level) {
                 // add a new level because this level is new.
                 addLevels(level);
             }
-            // now perform the comparison operation.
-            setValues(level, attr, newValue);
-            Function<Integer, Integer> method = decideComparator(comparator);
-            Table table = conditionTables.get(level - 1).get(conditionLevel.get(level - 1));
-            //boolean empty = isEmptyTable(comparator, newValue);
-            for (int i = 0; i < table.getNumberOfRows(); i++) {
-                boolean isSensible = isSensibleCompare(table.getRows().get(i).getValue(attrIndex), comparator, newValue);
-                if (isSensible) i = method.apply(i);
-                else i = emptyTable(i);
-            }
+            // narrow the condition in the current slot by this comparison.
+            ArrayList<Condition> conditionLevelList = conditions.get(level - 1);
+            int index = conditionLevel.get(level - 1);
+            Comparison comparison = new Comparison(intermediary.getFieldIndex(attr), comparator, newValue);
+            comparisons += 1;
+            conditionLevelList.set(index, Condition.and(conditionLevelList.get(index), comparison));
             return true;
         }
         updateErrorMessage("The [AttributeName] \"" + attr + "\" does not exist in [TableName] \"" + intermediary.getName() + "\".");
         return false;
     }
 
-
-    private void setValues(int level, String attr, String newValue) {
-        this.localLevel = level - 1;
-        this.isStrLit = false;
-        if (newValue.contains("'")) this.isStrLit = true;
-        this.value = newValue.replaceAll("^'|'$", "");
-        this.attrIndex = intermediary.getFields().indexOf(attr);;
-    }
-
-    private int removeRow(int i) {
-        conditionTables.get(localLevel).get(conditionLevel.get(localLevel)).removeRows(i);
-        return i - 1;
-    }
-
-
-    private int equalsComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        String saved = table.getRows().get(i).getValue(attrIndex);
-        if (isDouble(saved) && isDouble(value) && !this.isStrLit) {
-            if (Double.parseDouble(saved) != Double.parseDouble(value)) {
-                i = removeRow(i);
-            }
-            return i;
-        }
-        if (!table.getRows().get(i).getValue(attrIndex).equals(value)) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-    private int notEqualsComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        String saved = table.getRows().get(i).getValue(attrIndex);
-        if (isDouble(saved) && isDouble(value) && !this.isStrLit) {
-            if (Double.parseDouble(saved) == Double.parseDouble(value)) {
-                i = removeRow(i);
-            }
-            return i;
-        }
-        if (table.getRows().get(i).getValue(attrIndex).equals(value)) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-
-    private int likeComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        if (!table.getRows().get(i).getValue(attrIndex).contains(value)) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-
-    private boolean isDouble(String str) {
-        try {
-            Double.parseDouble(str);
-        } catch (NumberFormatException e) {
-            return false;
-        }
-        return true;
-    }
-
-    private int greaterComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        String saved = table.getRows().get(i).getValue(attrIndex);
-
-        if (isDouble(saved) && isDouble(value) && !this.isStrLit) {
-            if (Double.parseDouble(saved) >= Double.parseDouble(value)) {
-                i = removeRow(i);
-            }
-            return i;
-        }
-        if (saved.compareTo(value) >= 0) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-
-    private int greaterEqualComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        String saved = table.getRows().get(i).getValue(attrIndex);
-        if (isDouble(saved) && isDouble(value) && !this.isStrLit) {
-            if (Double.parseDouble(saved) > Double.parseDouble(value)) {
-                i = removeRow(i);
-            }
-            return i;
-        }
-        if (table.getRows().get(i).getValue(attrIndex).compareTo(value) > 0) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-
-    private int lessComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        String saved = table.getRows().get(i).getValue(attrIndex);
-        if (isDouble(saved) && isDouble(value) && !this.isStrLit) {
-            if (Double.parseDouble(saved) <= Double.parseDouble(value)) {
-                i = removeRow(i);
-            }
-            return i;
-        }
-        if (saved.compareTo(value) <= 0) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-
-    private int lessEqualComparator(int i) {
-        Table table = conditionTables.get(localLevel).get(conditionLevel.get(localLevel));
-        String saved = table.getRows().get(i).getValue(attrIndex);
-        if (isDouble(saved) && isDouble(value) && !this.isStrLit) {
-            if (Double.parseDouble(saved) < Double.parseDouble(value)) {
-                i = removeRow(i);
-            }
-            return i;
-        }
-        if (table.getRows().get(i).getValue(attrIndex).compareTo(value) < 0) {
-            i = removeRow(i);
-        }
-        return i;
-    }
-
-    private boolean isKeyword(String value) {
-        return (value.equals("TRUE") || value.equals("FALSE") || value.equals("NULL"));
-    }
-
-    private Function<Integer, Integer> decideComparator(String operator) {
-        switch (operator) {
-            case "==":
-                return this::equalsComparator;
-            case "!=":
-                return this::notEqualsComparator;
-            case "<=":
-                return this::greaterEqualComparator;
-            case ">=":
-                return this::lessEqualComparator;
-            case "<":
-                return this::greaterComparator;
-            case ">":
-                return this::lessComparator;
-            default:
-                return this::likeComparator;
-        }
-    }
-
     private boolean checkTableMatch(String attr, Table table) {
         String[] attrCompund = attr.split("\\.");
         if (attrCompund.length == 2) {
@@ -609,10 +513,8 @@ public class Interpreter {
     private boolean checkAttrExists(String attr, Table table) {
         if (!checkTableMatch(attr, table)) return false;
         attr = getAttribute(attr);
-        for (int i = 0; i < table.getNumberOfFields(); i++) {
-            if (table.getFields().get(i).equalsIgnoreCase(attr)) {
-                return true;
-            }
+        if (table.existsField(attr)) {
+            return true;
         }
         updateErrorMessage("The [AttributeName] \"" + attr + "\" does not exist for the [TableName] \"" + table.getName() + "\".");
         return false;
@@ -622,25 +524,16 @@ public class Interpreter {
         table.addField("id");
         for (int i = 1; i < intermediary.getNumberOfFields(); i++) {
             if (i != index1) {
-                table.addField(intermediary.getName() + "." + intermediary.getFields().get(i));
+                table.addField(intermediary.getName() + "." + intermediary.getFieldName(i));
             }
         }
         for (int i = 1; i < joinTable.getNumberOfFields(); i++) {
             if (i != index2) {
-                table.addField(joinTable.getName() + "." + joinTable.getFields().get(i));
+                table.addField(joinTable.getName() + "." + joinTable.getFieldName(i));
             }
         }
     }
 
-    private void addJoinRow(Table joined, ArrayList<String> row1, ArrayList<String> row2, int index1, int index2) {
-        if (index1 != 0) row1.remove(index1);
-        if (index2 != 0) row2.remove(index2);
-        row1.remove(0);
-        row2.remove(0);
-        row1.addAll(row2);
-        joined.addRows(row1);
-    }
-
     private String getAttribute(String attr) {
         String[] atttrCompund = attr.split("\\.");
         if (atttrCompund.length == 2) return atttrCompund[1];
@@ -656,23 +549,18 @@ public class Interpreter {
         int index1 = intermediary.getFieldIndex(getAttribute(match1));
         int index2 = joinTable.getFieldIndex(getAttribute(match2));
         setJoinAttributes(table, index1, index2);
-        for (int i = 0; i < intermediary.getNumberOfRows(); i++) {
-            for (int j = 0; j < joinTable.getNumberOfRows(); j++) {
-                String value1 = intermediary.getRow(i).get(index1);
-                String value2 = joinTable.getRow(j).get(index2);
-                if (value1.equals(value2)) {
-                    addJoinRow(table, intermediary.getRow(i), joinTable.getRow(j), index1, index2);
-                }
-            }
-        }
+        new TableJoin(intermediary, index1, joinTable, index2).execute(table);
+        joins.add(new long[] {intermediary.getNumberOfRows(), joinTable.getNumberOfRows(), table.getNumberOfRows()});
         intermediary.copy(table, false);
         return true;
     }
 
     public boolean useJoin(String name) {
         if (parsing) return true;
+        if (!lockTable(name, exclusive)) return false;
         if (fileReading.doesTableExist(name)) {
             joinTable = fileReading.readFileToTable(name);
+            rowsScanned += joinTable.getNumberOfRows();
             return true;
         }
         updateErrorMessage("The table \"" + name + "\" does not exist.");
@@ -704,8 +592,10 @@ public class Interpreter {
 
     public boolean useTable(String name) {
         if (parsing) return true;
+        if (!lockTable(name, exclusive)) return false;
         if (fileReading.doesTableExist(name)) {
             intermediary = fileReading.readFileToTable(name);
+            rowsScanned += intermediary.getNumberOfRows();
             original.copy(intermediary, false);
             return setQuery(name.toLowerCase());
         }
@@ -728,24 +618,91 @@ public class Interpreter {
         return false;
     }
 
-    public boolean writeRows(ArrayList<String> currentList) {
+    // Takes a block of ids from the table's counter for the whole batch, so nothing is re-read per row.
+    public boolean writeRows(ArrayList<ArrayList<String>> newRows) {
         if (parsing) return true;
-        if (currentList.size() == intermediary.getNumberOfFields() - 1) {
-            for (int i = 0; i < currentList.size(); i++) {
-                String newValue = capitaliseKeyword(currentList.get(i));
-                currentList.set(i, newValue.replaceAll("^'|'$", ""));
+        int width = intermediary.getNumberOfFields() - 1;
+        for (ArrayList<String> values : newRows) {
+            if (values.size() != width) {
+                updateErrorMessage("The table \"" + intermediary.getName() + "\" must take " + width + " values exactly.");
+                return false;
             }
-            intermediary.addRowsFile(currentList, fileReading);
-            incrementConfig();
-            return true;
         }
-        updateErrorMessage("The table \"" + intermediary.getName() + "\" must take " + (intermediary.getNumberOfFields() - 1) + " values exactly.");
-        return false;
+        int nextId = Integer.parseInt(config);
+        config = Integer.toString(nextId + newRows.size());
+        for (ArrayList<String> values : newRows) {
+            ArrayList<String> rowValues = new ArrayList<>(width + 1);
+            rowValues.add(Integer.toString(++nextId));
+            for (String value : values) {
+                rowValues.add(capitaliseKeyword(value).replaceAll("^'|'$", ""));
+            }
+            Row row = new Row(rowValues);
+            intermediary.addRow(row);
+            logChange(WriteAheadLog.Type.INSERT, row);
+        }
+        return true;
+    }
+
+    /**
+     * Appends every line of a tab-separated file in the import folder to the table. The first line
+     * must name the table's columns (without id); an empty cell is stored as NULL, and keywords are
+     * stored as INSERT stores them. Nothing is kept if any line is malformed, and the table is written
+     * out once at the end rather than logged row by row.
+     */
+    public boolean loadRows(String fileName) {
+        if (parsing) return true;
+        fileName = fileName.replaceAll("^'|'$", "");
+        File file = FileReading.findImportFile(fileName);
+        if (file == null) {
+            updateErrorMessage("The file \"" + fileName + "\" must be a relative path inside the import folder.");
+            return false;
+        }
+        int width = intermediary.getNumberOfFields() - 1;
+        int nextId = Integer.parseInt(config);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null || !isLoadHeader(line.replaceAll("\r$", ""))) {
+                updateErrorMessage("The first line of \"" + fileName + "\" must name the columns of \"" + intermediary.getName() + "\".");
+                return false;
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber += 1;
+                line = line.replaceAll("\r$", "");
+                if (line.length() == 0) continue;
+                String[] values = line.split("\t", -1);
+                if (values.length != width) {
+                    updateErrorMessage("Line " + lineNumber + " of \"" + fileName + "\" has " + values.length + " values but the table \"" + intermediary.getName() + "\" takes " + width + ".");
+                    return false;
+                }
+                ArrayList<String> rowValues = new ArrayList<>(width + 1);
+                rowValues.add(Integer.toString(++nextId));
+                for (String value : values) {
+                    rowValues.add(value.length() == 0 ? "NULL" : capitaliseKeyword(value));
+                }
+                intermediary.addRow(new Row(rowValues));
+            }
+        } catch (IOException e) {
+            updateErrorMessage("Could not read the file \"" + fileName + "\".");
+            return false;
+        }
+        config = Integer.toString(nextId);
+        rewrite = true;
+        return true;
+    }
+
+    private boolean isLoadHeader(String line) {
+        String[] names = line.split("\t", -1);
+        if (names.length != intermediary.getNumberOfFields() - 1) return false;
+        ArrayList<String> fields = intermediary.getFields();
+        for (int i = 0; i < names.length; i++) {
+            if (!names[i].equalsIgnoreCase(fields.get(i + 1))) return false;
+        }
+        return true;
     }
 
 
-    private void incrementConfig() {
-        int newMax = Integer.parseInt(config) + 1;
-        config = Integer.toString(newMax);
+    private void logChange(WriteAheadLog.Type type, Row row) {
+        changes.add(new WriteAheadLog.Record(type, intermediary.getName(), new ArrayList<>(row.getValues())));
     }
 }
@@ -0,0 +1,56 @@
+package edu.uob;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A read-write lock per table and per database, shared by every session. Every statement that uses
+ * a database first takes its lock shared; DROP DATABASE takes it exclusively, so it waits for them
+ * all and keeps new ones out. Tables in different databases, or different tables in one database,
+ * never wait on each other.
+ *
+ * <p>Statements that change a table then take the table's lock exclusively, and the table stays
+ * pinned in the TableCache while it is held. Statements that only read, including JOINs over
+ * several tables, take no table lock at all: they read from a TableCache snapshot, so they neither
+ * wait for writers nor hold them up.
+ *
+ * <p>A writing statement outside a transaction locks only the table it changes, and releases it
+ * once the change is committed. A transaction keeps every table it changes locked until it ends,
+ * so two transactions can wait on each other; tryLock gives up after db.lock.timeoutMillis
+ * (default 2000) so that one of them fails instead, and is rolled back, which releases its locks
+ * for the other.
+ *
+ * <p>Locks belong to a session rather than a thread, since the statements of one transaction may run
+ * on different worker threads, so they are StampedLocks, which any thread may release. They are not
+ * reentrant: callers keep track of what they hold.
+ */
+public class LockManager {
+    // One lock per table or database ever used; there are few enough that they are never removed.
+    private final ConcurrentHashMap<String, StampedLock> locks = new ConcurrentHashMap<>();
+    private final long timeoutMillis = Long.getLong("db.lock.timeoutMillis", 2000);
+
+    private Lock view(String key, boolean exclusive) {
+        StampedLock stampedLock = locks.computeIfAbsent(key, k -> new StampedLock());
+        return exclusive ? stampedLock.asWriteLock() : stampedLock.asReadLock();
+    }
+
+    /** Blocks until the lock for the key is held in the given mode, and returns it for unlocking. */
+    public Lock lock(String key, boolean exclusive) {
+        Lock lock = view(key, exclusive);
+        lock.lock();
+        return lock;
+    }
+
+    /** Like lock, but returns null if the lock is not free within the timeout. */
+    public Lock tryLock(String key, boolean exclusive) {
+        Lock lock = view(key, exclusive);
+        try {
+            return lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS) ? lock : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package edu.uob;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms and counters for every statement the server runs, grouped by the statement's
+ * first keyword. Each statement's time is split into the phases below; SHOW STATS prints them and
+ * register() also publishes them over JMX.
+ */
+public class Metrics implements MetricsMXBean {
+    public static final String OBJECT_NAME = "edu.uob:type=Metrics";
+
+    public enum Phase { TOKENIZE, PARSE, EXECUTE, PERSIST, SERIALIZE }
+
+    private static final String[] STATEMENTS = {"USE", "CREATE", "DROP", "ALTER", "INSERT", "SELECT", "UPDATE",
+            "DELETE", "JOIN", "LOAD", "PREPARE", "EXECUTE", "DEALLOCATE", "SHOW", "BEGIN", "COMMIT", "ROLLBACK"};
+
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    private static class StatementStats {
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+        private final LongAdder rowsScanned = new LongAdder();
+        private final LongAdder rowsReturned = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        private StatementStats() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * What one statement did, filled in as it runs. Each mark() charges the time since the previous
+     * mark to a phase. Only the thread running the statement touches it.
+     */
+    public static class Trace {
+        private final long started = System.nanoTime();
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private long last = started;
+        private long rowsScanned = 0;
+        private long rowsReturned = 0;
+        private long bytesRead = 0;
+        private long bytesWritten = 0;
+        private int comparisons = 0;
+        private ArrayList<long[]> joins = new ArrayList<>();
+        private long finished = 0;
+
+        public void mark(Phase phase) {
+            long now = System.nanoTime();
+            phaseNanos[phase.ordinal()] += now - last;
+            last = now;
+        }
+
+        public void addRowsScanned(long rows) {
+            rowsScanned += rows;
+        }
+
+        public void addRowsReturned(long rows) {
+            rowsReturned += rows;
+        }
+
+        public void addBytesRead(long bytes) {
+            bytesRead += bytes;
+        }
+
+        public void addBytesWritten(long bytes) {
+            bytesWritten += bytes;
+        }
+
+        public void addComparisons(int count) {
+            comparisons += count;
+        }
+
+        public void addJoin(long leftRows, long rightRows, long resultRows) {
+            joins.add(new long[] {leftRows, rightRows, resultRows});
+        }
+
+        /** Stops the clock for getElapsedNanos(). */
+        public void finish() {
+            if (finished == 0) finished = System.nanoTime();
+        }
+
+        public long getElapsedNanos() {
+            return (finished == 0 ? System.nanoTime() : finished) - started;
+        }
+
+        public long getPhaseNanos(Phase phase) {
+            return phaseNanos[phase.ordinal()];
+        }
+
+        public long getRowsScanned() {
+            return rowsScanned;
+        }
+
+        public long getRowsReturned() {
+            return rowsReturned;
+        }
+
+        public int getComparisons() {
+            return comparisons;
+        }
+
+        /** Each join as {rows on the left, rows on the right, rows joined}. */
+        public ArrayList<long[]> getJoins() {
+            return joins;
+        }
+    }
+
+    // The first word of the command if it starts a known statement, so junk cannot grow the map.
+    static String statementType(String command) {
+        int start = 0;
+        while (start < command.length() && Character.isWhitespace(command.charAt(start))) start++;
+        int end = start;
+        while (end < command.length() && Character.isLetter(command.charAt(end))) end++;
+        String word = command.substring(start, end).toUpperCase(Locale.ROOT);
+        for (String statement : STATEMENTS) {
+            if (statement.equals(word)) return statement;
+        }
+        return "INVALID";
+    }
+
+    public void record(String command, Trace trace) {
+        StatementStats stats = statements.computeIfAbsent(statementType(command), type -> new StatementStats());
+        stats.total.record(trace.getElapsedNanos());
+        for (int i = 0; i < stats.phases.length; i++) {
+            stats.phases[i].record(trace.phaseNanos[i]);
+        }
+        stats.rowsScanned.add(trace.rowsScanned);
+        stats.rowsReturned.add(trace.rowsReturned);
+        stats.bytesRead.add(trace.bytesRead);
+        stats.bytesWritten.add(trace.bytesWritten);
+    }
+
+    // Statement types in name order, so the output is stable.
+    private TreeMap<String, StatementStats> sorted() {
+        return new TreeMap<>(statements);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    /**
+     * Writes a table of counters per statement type, a blank line, then a table of latencies in
+     * microseconds per statement type and phase.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        TreeMap<String, StatementStats> stats = sorted();
+        writer.write("statement\tcount\trowsScanned\trowsReturned\tbytesRead\tbytesWritten\n");
+        for (Map.Entry<String, StatementStats> entry : stats.entrySet()) {
+            StatementStats statement = entry.getValue();
+            writer.write(entry.getKey() + "\t" + statement.total.getCount() + "\t" + statement.rowsScanned.sum()
+                    + "\t" + statement.rowsReturned.sum() + "\t" + statement.bytesRead.sum()
+                    + "\t" + statement.bytesWritten.sum() + "\n");
+        }
+        writer.write("\nstatement\tphase\tmeanUs\tp50Us\tp90Us\tp99Us\tmaxUs\n");
+        for (Map.Entry<String, StatementStats> entry : stats.entrySet()) {
+            writeLatency(writer, entry.getKey(), "total", entry.getValue().total);
+            for (Phase phase : Phase.values()) {
+                writeLatency(writer, entry.getKey(), phase.name().toLowerCase(Locale.ROOT),
+                        entry.getValue().phases[phase.ordinal()]);
+            }
+        }
+    }
+
+    private static void writeLatency(Writer writer, String statement, String phase, LatencyHistogram histogram)
+            throws IOException {
+        writer.write(statement + "\t" + phase + "\t" + micros(Math.round(histogram.getMean()))
+                + "\t" + micros(histogram.getValueAtPercentile(0.5)) + "\t" + micros(histogram.getValueAtPercentile(0.9))
+                + "\t" + micros(histogram.getValueAtPercentile(0.99)) + "\t" + micros(histogram.getMax()) + "\n");
+    }
+
+    /** Publishes these metrics on the platform MBean server, replacing any registered before. */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            }
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            System.out.println("Could not register the metrics MBean.");
+        }
+    }
+
+    @Override
+    public Map<String, Long> getStatementCounts() {
+        TreeMap<String, Long> counts = new TreeMap<>();
+        sorted().forEach((type, stats) -> counts.put(type, stats.total.getCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getRowsScanned() {
+        TreeMap<String, Long> rows = new TreeMap<>();
+        sorted().forEach((type, stats) -> rows.put(type, stats.rowsScanned.sum()));
+        return rows;
+    }
+
+    @Override
+    public Map<String, Long> getRowsReturned() {
+        TreeMap<String, Long> rows = new TreeMap<>();
+        sorted().forEach((type, stats) -> rows.put(type, stats.rowsReturned.sum()));
+        return rows;
+    }
+
+    @Override
+    public Map<String, Long> getBytesRead() {
+        TreeMap<String, Long> bytes = new TreeMap<>();
+        sorted().forEach((type, stats) -> bytes.put(type, stats.bytesRead.sum()));
+        return bytes;
+    }
+
+    @Override
+    public Map<String, Long> getBytesWritten() {
+        TreeMap<String, Long> bytes = new TreeMap<>();
+        sorted().forEach((type, stats) -> bytes.put(type, stats.bytesWritten.sum()));
+        return bytes;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyPercentileMicros(double percentile) {
+        TreeMap<String, Double> latencies = new TreeMap<>();
+        sorted().forEach((type, stats) -> {
+            latencies.put(type + ".total", stats.total.getValueAtPercentile(percentile / 100) / 1000.0);
+            for (Phase phase : Phase.values()) {
+                long nanos = stats.phases[phase.ordinal()].getValueAtPercentile(percentile / 100);
+                latencies.put(type + "." + phase.name().toLowerCase(Locale.ROOT), nanos / 1000.0);
+            }
+        });
+        return latencies;
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+    }
+}
@@ -0,0 +1,21 @@
+package edu.uob;
+
+import java.util.Map;
+
+/** The JMX view of Metrics. Every map is keyed by statement type, such as SELECT. */
+public interface MetricsMXBean {
+    Map<String, Long> getStatementCounts();
+
+    Map<String, Long> getRowsScanned();
+
+    Map<String, Long> getRowsReturned();
+
+    Map<String, Long> getBytesRead();
+
+    Map<String, Long> getBytesWritten();
+
+    /** Latency at the given percentile (0 to 100), keyed by statement type and phase, e.g. SELECT.parse. */
+    Map<String, Double> getLatencyPercentileMicros(double percentile);
+
+    void reset();
+}
@@ -0,0 +1,84 @@
+package edu.uob;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+/**
+ * Tests the candidate rows of a large table against a bound condition on the common ForkJoinPool.
+ * The candidate bitmap is split into chunks, each chunk writes which of its rows match into its own
+ * words of a shared selection bitmap, and the words are then combined into one BitSet, in row order.
+ * Nothing but the bitmap is written, so the table and its rows are never touched.
+ *
+ * <p>Fewer than db.scan.parallelRows candidates (default 65536) are scanned on the calling thread,
+ * since splitting them costs more than it saves.
+ */
+public class ParallelScan {
+    public static final int PARALLEL_ROWS = Integer.getInteger("db.scan.parallelRows", 65536);
+    // A multiple of 64, so that no two chunks share a word of the bitmap.
+    public static final int CHUNK_ROWS = 8192;
+
+    /** The candidates that match test. */
+    public static BitSet select(IntPredicate test, BitSet candidates) {
+        if (candidates.cardinality() < PARALLEL_ROWS) {
+            long[] in = candidates.toLongArray();
+            long[] out = new long[in.length];
+            scan(test, in, out, 0, in.length);
+            return BitSet.valueOf(out);
+        }
+        return select(test, candidates, CHUNK_ROWS);
+    }
+
+    /** Like select, always on the pool, with chunks of chunkRows rows rounded up to a multiple of 64. */
+    public static BitSet select(IntPredicate test, BitSet candidates, int chunkRows) {
+        int chunkWords = (chunkRows + 63) >>> 6;
+        long[] in = candidates.toLongArray();
+        long[] out = new long[in.length];
+        int chunks = (in.length + chunkWords - 1) / chunkWords;
+        ForkJoinPool.commonPool().invoke(new Chunks(test, in, out, chunkWords, 0, chunks));
+        return BitSet.valueOf(out);
+    }
+
+    private static void scan(IntPredicate test, long[] in, long[] out, int from, int to) {
+        for (int w = from; w < to; w++) {
+            long word = in[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (test.test(i)) out[w] |= 1L << i;
+                word &= word - 1;
+            }
+        }
+    }
+
+    // Splits its range of chunks in half until one is left, then scans that chunk's words.
+    private static class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient IntPredicate test;
+        private final long[] in;
+        private final long[] out;
+        private final int chunkWords;
+        private final int from;
+        private final int to;
+
+        private Chunks(IntPredicate test, long[] in, long[] out, int chunkWords, int from, int to) {
+            this.test = test;
+            this.in = in;
+            this.out = out;
+            this.chunkWords = chunkWords;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunks(test, in, out, chunkWords, from, middle),
+                        new Chunks(test, in, out, chunkWords, middle, to));
+                return;
+            }
+            scan(test, in, out, from * chunkWords, Math.min(in.length, to * chunkWords));
+        }
+    }
+}
@@ -17,11 +17,17 @@ public class Parser {
     private ArrayList<String> currentList = new ArrayList<>();
     private boolean read = false;
     private boolean write = false;
+    private boolean preparing = false;
 
-    private final String[] keywords = {"USE", "CREATE", "DATABASE", "TABLE", "DROP", "ALTER", "INSERT", "INTO", "VALUES", "SELECT", "FROM", "WHERE", "UPDATE", "SET", "DELETE", "JOIN", "AND", "ON", "ADD", "TRUE", "FALSE", "NULL", "OR", "LIKE"};
+    private final String[] keywords = {"USE", "CREATE", "DATABASE", "TABLE", "DROP", "ALTER", "INSERT", "INTO", "VALUES", "SELECT", "FROM", "WHERE", "UPDATE", "SET", "DELETE", "JOIN", "AND", "ON", "ADD", "TRUE", "FALSE", "NULL", "OR", "LIKE", "LOAD", "INDEX", "BEGIN", "COMMIT", "ROLLBACK",
+            "PREPARE", "EXECUTE", "DEALLOCATE", "SHOW"};
 
     public Parser(ArrayList<String> tokenInput, FileReading fileReading) {
-        interpreter = new Interpreter(fileReading);
+        this(tokenInput, new Interpreter(fileReading));
+    }
+
+    public Parser(ArrayList<String> tokenInput, Interpreter initInterpreter) {
+        interpreter = initInterpreter;
         this.tokens = tokenInput;
         this.i = 0;
     }
@@ -30,6 +36,11 @@ public class Parser {
         interpreter.setParsing();
     }
 
+    // Lets Plan placeholders stand in for any [Value].
+    public void setPreparing() {
+        preparing = true;
+    }
+
     public boolean getInterpretable() {
         return interpreter.getInterpretable();
     }
@@ -38,6 +49,12 @@ public class Parser {
         return interpreter.getErrorMessage();
     }
 
+    // Statements that write lock their tables exclusively, so the interpreter is told before it opens any.
+    private void setWrite() {
+        write = true;
+        interpreter.setExclusive();
+    }
+
     public boolean getWrite() {
         return write;
     }
@@ -46,6 +63,14 @@ public class Parser {
         return read;
     }
 
+    public ArrayList<WriteAheadLog.Record> getChanges() {
+        return interpreter.getChanges();
+    }
+
+    public void recordTo(Metrics.Trace trace) {
+        interpreter.recordTo(trace);
+    }
+
     public Table execute() {
         return interpreter.execute(write);
     }
@@ -96,16 +121,16 @@ public class Parser {
             case "USE":
                 return isUse();
             case "CREATE":
-                write = true;
+                setWrite();
                 return isCreate();
             case "DROP":
                 //write = true;
                 return isDrop();
             case "ALTER":
-                write = true;
+                setWrite();
                 return isAlter();
             case "INSERT":
-                write = true;
+                setWrite();
                 return isInsert();
             case "SELECT":
                 condition = true;
@@ -113,17 +138,24 @@ public class Parser {
                 return isSelect();
             case "UPDATE":
                 condition = true;
-                write = true;
+                setWrite();
                 return isUpdate();
             case "DELETE":
                 condition = true;
-                write = true;
+                setWrite();
                 return isDelete();
             case "JOIN":
                 read = true;
                 return isJoin();
+            case "LOAD":
+                setWrite();
+                return isLoad();
+            case "BEGIN":
+            case "COMMIT":
+            case "ROLLBACK":
+                return isTransaction();
             default:
-                updateErrorMessage("Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" keyword to begin the query.");
+                updateErrorMessage("Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" or \"LOAD\" or \"BEGIN\" or \"COMMIT\" or \"ROLLBACK\" keyword to begin the query.");
                 return false;
         }
     }
@@ -178,6 +210,10 @@ public class Parser {
                 write = false;
                 return interpreter.createDatabase(tokens.get(i-1));
             }
+            if (tokens.get(i).equalsIgnoreCase("INDEX")) {
+                errorMessage = "";
+                return isCreateIndex();
+            }
             errorMessage = "Expected TABLE or DATABASE keyword after CREATE keyword.";
         }
         return false;
@@ -196,11 +232,55 @@ public class Parser {
             if (isWordThenMethod("DATABASE", this::isDatabaseName, msg)) {
                 return interpreter.dropDatabase(tokens.get(i-1));
             }
+            if (tokens.get(i).equalsIgnoreCase("INDEX")) {
+                errorMessage = "";
+                setWrite();
+                return isDropIndex();
+            }
             errorMessage = "Expected TABLE or DATABASE keyword after DROP keyword.";
         }
         return false;
     }
 
+    // CREATE INDEX [IndexName] ON [TableName] "(" [AttributeName] ")"
+    public boolean isCreateIndex() {
+        String msg = "Expected <indexName> after CREATE INDEX keywords.";
+        if (isWordThenMethod("INDEX", this::isIndexName, msg)) {
+            String indexName = tokens.get(i-1);
+            msg = "Expected <tableName> after ON keyword.";
+            if (isWordThenMethod("ON", this::isTableName, msg)) {
+                if (interpreter.useTable(tokens.get(i-1))) {
+                    msg = "Expected <attributeName> after ( character.";
+                    if (isWordThenMethod("(", this::isAttributeName, msg)) {
+                        if (tokens.get(i).equals(")")) {
+                            if (interpreter.createIndex(indexName, tokens.get(i-1))) {
+                                return incrementIndex();
+                            }
+                            return false;
+                        }
+                        updateErrorMessage("Expected a closing bracket \")\".");
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // DROP INDEX [IndexName] ON [TableName]
+    public boolean isDropIndex() {
+        String msg = "Expected <indexName> after DROP INDEX keywords.";
+        if (isWordThenMethod("INDEX", this::isIndexName, msg)) {
+            String indexName = tokens.get(i-1);
+            msg = "Expected <tableName> after ON keyword.";
+            if (isWordThenMethod("ON", this::isTableName, msg)) {
+                if (interpreter.useTable(tokens.get(i-1))) {
+                    return interpreter.dropIndex(indexName);
+                }
+            }
+        }
+        return false;
+    }
+
     public boolean isAlter() {
         if (tokens.get(i).equalsIgnoreCase("ALTER")) {
             if (!incrementIndex()) return false;
@@ -230,10 +310,20 @@ public class Parser {
                     if (tokens.get(i).equalsIgnoreCase("VALUES")) {
                         if (!incrementIndex()) return false;
                         msg = "Expected a list of values after ( character.";
-                        if (isWordThenMethod("(", this::isValueList, msg)) {
-                            if (interpreter.writeRows(currentList)) {
+                        // One or more (...) tuples separated by commas, all written as one batch.
+                        ArrayList<ArrayList<String>> rows = new ArrayList<>();
+                        while (isWordThenMethod("(", this::isValueList, msg)) {
+                            rows.add(currentList);
+                            currentList = new ArrayList<>();
+                            if (i + 1 < tokens.size() && tokens.get(i + 1).equals(",")) {
+                                i += 1;
+                                if (!incrementIndex()) return false;
+                                continue;
+                            }
+                            if (interpreter.writeRows(rows)) {
                                 return incrementIndex();
                             }
+                            return false;
                         }
                     }
                 }
@@ -325,6 +415,34 @@ public class Parser {
     }
 
 
+    // BEGIN, COMMIT and ROLLBACK take nothing else, so nothing is done unless ";" comes straight after.
+    public boolean isTransaction() {
+        String keyword = tokens.get(i).toUpperCase();
+        if (!incrementIndex() || !tokens.get(i).equals(";")) return false;
+        switch (keyword) {
+            case "BEGIN":
+                return interpreter.beginTransaction();
+            case "COMMIT":
+                return interpreter.commitTransaction();
+            default:
+                return interpreter.rollbackTransaction();
+        }
+    }
+
+    public boolean isLoad() {
+        String msg = "Expected <tableName> after LOAD keyword.";
+        if (isWordThenMethod("LOAD", this::isTableName, msg)) {
+            if (interpreter.useTable(tokens.get(i-1))) {
+                msg = "Expected a quoted file name after FROM keyword.";
+                if (isWordThenMethod("FROM", this::isQuotedStringLiteral, msg)) {
+                    return interpreter.loadRows(tokens.get(i-1));
+                }
+            }
+        }
+        return false;
+    }
+
+
     public boolean isBracketed(Supplier<Boolean> method) {
         if (tokens.get(i).equals("(")) {
             if (!conditionIndexes.contains(i)) {
@@ -537,6 +655,13 @@ public class Parser {
         return false;
     }
 
+    public boolean isIndexName() {
+        if (isPlainText("[IndexName]")) {
+            return isDistinct(tokens.get(i), "[IndexName]");
+        }
+        return false;
+    }
+
     public boolean isDatabaseName() {
         if (isPlainText("[DatabaseName]")) {
             return isDistinct(tokens.get(i), "[DatabaseName]");
@@ -619,31 +744,54 @@ public class Parser {
     }
 
     public boolean isValue() {
-        if (isQuotedStringLiteral() || isBooleanLiteral() || isFloatLiteral() || isIntegerLiteral() || tokens.get(i).equalsIgnoreCase("NULL")) {
+        if (preparing && Plan.isPlaceholder(tokens.get(i))) {
+            return true;
+        }
+        return isValue(tokens.get(i));
+    }
+
+    public static boolean isValue(String token) {
+        if (isQuotedStringLiteral(token) || isBooleanLiteral(token) || isFloatLiteral(token) || isIntegerLiteral(token) || token.equalsIgnoreCase("NULL")) {
             return true;
         }
         return false;
     }
 
     public boolean isBooleanLiteral() {
-        if (tokens.get(i).equalsIgnoreCase("TRUE") || tokens.get(i).equalsIgnoreCase("FALSE")) {
+        return isBooleanLiteral(tokens.get(i));
+    }
+
+    private static boolean isBooleanLiteral(String token) {
+        if (token.equalsIgnoreCase("TRUE") || token.equalsIgnoreCase("FALSE")) {
             return true;
         }
         return false;
     }
 
     public boolean isIntegerLiteral() {
-        return tokens.get(i).matches("^[+-]?[0-9]+$");
+        return isIntegerLiteral(tokens.get(i));
+    }
+
+    private static boolean isIntegerLiteral(String token) {
+        return token.matches("^[+-]?[0-9]+$");
     }
 
     public boolean isFloatLiteral() {
-        return tokens.get(i).matches("^[+-]?[0-9]+\\.[0-9]+$");
+        return isFloatLiteral(tokens.get(i));
+    }
+
+    private static boolean isFloatLiteral(String token) {
+        return token.matches("^[+-]?[0-9]+\\.[0-9]+$");
     }
 
     public boolean isQuotedStringLiteral() {
+        return isQuotedStringLiteral(tokens.get(i));
+    }
+
+    private static boolean isQuotedStringLiteral(String token) {
         // space, letter, symbol, digit...
         String regex = "^'[a-zA-Z0-9\\s\\Q!#$%&()*+,-./:;>=<?@[\\]^_`{}~\\E]*'$";
-        return tokens.get(i).matches(regex);
+        return token.matches(regex);
     }
 
     public boolean isPlainText(String name) {
@@ -0,0 +1,241 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A parsed statement, kept as the interpreter calls a successful parse makes, so it can be run again
+ * without tokenizing or parsing. Placeholders (?) in [Value] positions are filled in on each run.
+ *
+ * <p>A plan is recorded by parsing once with an interpreter that only notes down each call. Replaying
+ * it makes the same calls on a real interpreter; if any of them fails, the statement would have taken
+ * another path through the parser, so the caller falls back to a full parse for the exact error.
+ */
+public class Plan {
+    // Tokens can never start with a control character, so this cannot clash with real input.
+    private static final String PLACEHOLDER = "\u0000?";
+    private static final String[] PREPARABLE = {"SELECT", "INSERT", "UPDATE", "DELETE", "JOIN"};
+
+    private interface Step {
+        boolean run(Interpreter interpreter, UnaryOperator<String> bind);
+    }
+
+    private final ArrayList<String> tokens;
+    private final int placeholders;
+    private ArrayList<Step> steps = new ArrayList<>();
+    private boolean read;
+    private boolean write;
+    private String errorMessage = "";
+
+    private Plan(ArrayList<String> tokens, int placeholders) {
+        this.tokens = tokens;
+        this.placeholders = placeholders;
+    }
+
+    public static boolean isPlaceholder(String token) {
+        return token.startsWith(PLACEHOLDER);
+    }
+
+    /** Records the plan for a statement's tokens. With preparing set, each ? token becomes a placeholder. */
+    public static Plan record(ArrayList<String> statement, boolean preparing) {
+        ArrayList<String> tokens = new ArrayList<>(statement.size());
+        int placeholders = 0;
+        for (String token : statement) {
+            if (preparing && token.equals("?")) {
+                token = PLACEHOLDER + placeholders++;
+            }
+            tokens.add(token);
+        }
+        Plan plan = new Plan(tokens, placeholders);
+        if (!isPreparable(tokens)) {
+            plan.errorMessage = "Only SELECT, INSERT, UPDATE, DELETE and JOIN statements can be prepared.";
+            plan.steps = null;
+            return plan;
+        }
+        Parser parser = new Parser(tokens, plan.new Recorder());
+        parser.setParsing();
+        if (preparing) parser.setPreparing();
+        if (!parser.isCommand()) {
+            plan.errorMessage = parser.getErrorMessage();
+            plan.steps = null;
+            return plan;
+        }
+        plan.read = parser.getRead();
+        plan.write = parser.getWrite();
+        return plan;
+    }
+
+    private static boolean isPreparable(List<String> tokens) {
+        if (tokens.size() == 0) return false;
+        for (String keyword : PREPARABLE) {
+            if (tokens.get(0).equalsIgnoreCase(keyword)) return true;
+        }
+        return false;
+    }
+
+    public boolean isValid() {
+        return steps != null;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public int getPlaceholders() {
+        return placeholders;
+    }
+
+    public boolean getRead() {
+        return read;
+    }
+
+    public boolean getWrite() {
+        return write;
+    }
+
+    /** The statement's tokens with the values in place of its placeholders, for a full parse. */
+    public ArrayList<String> bind(List<String> values) {
+        ArrayList<String> bound = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            bound.add(bindToken(token, values));
+        }
+        return bound;
+    }
+
+    private static String bindToken(String token, List<String> values) {
+        if (isPlaceholder(token)) {
+            return values.get(Integer.parseInt(token.substring(PLACEHOLDER.length())));
+        }
+        return token;
+    }
+
+    /**
+     * Runs the plan on a fresh interpreter, or returns null if any step fails. A step that failed
+     * finally, on a lock that could not be had or a commit that could not be written, still returns
+     * the interpreter, holding the error, since parsing the statement again would only repeat it.
+     */
+    public Interpreter replay(FileReading fileReading, List<String> values) {
+        Interpreter interpreter = new Interpreter(fileReading);
+        if (write) interpreter.setExclusive();
+        UnaryOperator<String> bind = token -> bindToken(token, values);
+        for (Step step : steps) {
+            if (!step.run(interpreter, bind)) return interpreter.isFailedFinally() ? interpreter : null;
+        }
+        return interpreter;
+    }
+
+    private static ArrayList<String> bindAll(ArrayList<String> list, UnaryOperator<String> bind) {
+        ArrayList<String> bound = new ArrayList<>(list.size());
+        for (String token : list) {
+            bound.add(bind.apply(token));
+        }
+        return bound;
+    }
+
+    // Notes down every call the parser makes, in order, and lets the parse carry on as if each succeeded.
+    // Lists are copied, since the interpreter writes into the ones it is given.
+    private class Recorder extends Interpreter {
+        Recorder() {
+            super(null);
+            setParsing();
+        }
+
+        @Override
+        public boolean useTable(String name) {
+            steps.add((interpreter, bind) -> interpreter.useTable(bind.apply(name)));
+            return true;
+        }
+
+        @Override
+        public boolean useJoin(String name) {
+            steps.add((interpreter, bind) -> interpreter.useJoin(bind.apply(name)));
+            return true;
+        }
+
+        @Override
+        public boolean executeJoin(String match1, String match2) {
+            steps.add((interpreter, bind) -> interpreter.executeJoin(bind.apply(match1), bind.apply(match2)));
+            return true;
+        }
+
+        @Override
+        public void useQuery(ArrayList<String> newQuery) {
+            ArrayList<String> query = new ArrayList<>(newQuery);
+            steps.add((interpreter, bind) -> {
+                interpreter.useQuery(bindAll(query, bind));
+                return true;
+            });
+        }
+
+        @Override
+        public void specifyQuery() {
+            steps.add((interpreter, bind) -> {
+                interpreter.specifyQuery();
+                return true;
+            });
+        }
+
+        @Override
+        public boolean specifyUpdate(ArrayList<String> nameValueList) {
+            ArrayList<String> list = new ArrayList<>(nameValueList);
+            steps.add((interpreter, bind) -> interpreter.specifyUpdate(bindAll(list, bind)));
+            return true;
+        }
+
+        @Override
+        public void specifyDelete() {
+            steps.add((interpreter, bind) -> {
+                interpreter.specifyDelete();
+                return true;
+            });
+        }
+
+        @Override
+        public boolean writeRows(ArrayList<ArrayList<String>> newRows) {
+            ArrayList<ArrayList<String>> rows = new ArrayList<>();
+            for (ArrayList<String> row : newRows) {
+                rows.add(new ArrayList<>(row));
+            }
+            steps.add((interpreter, bind) -> {
+                ArrayList<ArrayList<String>> bound = new ArrayList<>(rows.size());
+                for (ArrayList<String> row : rows) {
+                    bound.add(bindAll(row, bind));
+                }
+                return interpreter.writeRows(bound);
+            });
+            return true;
+        }
+
+        @Override
+        public boolean addCondition(String attr, String comparator, String newValue, int level) {
+            steps.add((interpreter, bind) ->
+                    interpreter.addCondition(bind.apply(attr), bind.apply(comparator), bind.apply(newValue), level));
+            return true;
+        }
+
+        @Override
+        public void addOperator(String operator) {
+            steps.add((interpreter, bind) -> {
+                interpreter.addOperator(operator);
+                return true;
+            });
+        }
+
+        @Override
+        public void condenseQuery() {
+            steps.add((interpreter, bind) -> {
+                interpreter.condenseQuery();
+                return true;
+            });
+        }
+
+        @Override
+        public void updateIntermediary() {
+            steps.add((interpreter, bind) -> {
+                interpreter.updateIntermediary();
+                return true;
+            });
+        }
+    }
+}
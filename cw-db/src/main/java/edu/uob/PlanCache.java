@@ -0,0 +1,55 @@
+package edu.uob;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recorded plans shared by every session, keyed by normalised statement text and evicted
+ * least-recently-used once there are more than the capacity.
+ */
+public class PlanCache {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final LinkedHashMap<String, Plan> plans;
+
+    public PlanCache() {
+        this(Integer.getInteger("db.plans.size", DEFAULT_CAPACITY));
+    }
+
+    public PlanCache(int capacity) {
+        plans = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Trims the statement and collapses runs of spaces outside quotes, which never changes its tokens.
+    public static String normalise(String statement) {
+        statement = statement.trim();
+        StringBuilder normalised = new StringBuilder(statement.length());
+        boolean quoted = false;
+        for (int i = 0; i < statement.length(); i++) {
+            char c = statement.charAt(i);
+            if (c == '\'') quoted = !quoted;
+            if (c == ' ' && !quoted && i > 0 && statement.charAt(i - 1) == ' ') continue;
+            normalised.append(c);
+        }
+        return normalised.toString();
+    }
+
+    public synchronized Plan get(String key) {
+        return plans.get(key);
+    }
+
+    public synchronized void put(String key, Plan plan) {
+        plans.put(key, plan);
+    }
+
+    public synchronized int size() {
+        return plans.size();
+    }
+}
@@ -8,6 +8,10 @@ public class Row {
         values = new ArrayList<String>();
     }
 
+    public Row(ArrayList<String> initValues) {
+        values = new ArrayList<String>(initValues);
+    }
+
     public Row removeValue(int index) {
         if (index < values.size()) {
             values.remove(index);
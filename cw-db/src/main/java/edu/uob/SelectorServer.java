@@ -0,0 +1,355 @@
+package edu.uob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A non-blocking front end for DBServer. One thread multiplexes every connection through a Selector,
+ * and a small pool runs the commands, so thousands of mostly idle clients cost no threads of their own.
+ *
+ * <p>Clients may pipeline: several newline-terminated commands can be sent without waiting for the
+ * replies. Each connection's commands run one at a time and in order on its own Session, and every
+ * reply is followed by the usual END_OF_TRANSMISSION line, so replies come back in the order sent.
+ *
+ * <p>Replies are streamed: the worker encodes them into small buffers as the rows are written, and
+ * waits while a client has more than MAX_PENDING_OUTPUT bytes of replies unsent, so a large result
+ * is never held whole. A client that takes no more of its replies for db.selector.writeTimeoutMillis
+ * (default 10000) is disconnected, so clients that stop reading cannot hold every worker. So is one
+ * that sends a line of more than MAX_LINE_BYTES. A connection is not read from while it has
+ * MAX_QUEUED_COMMANDS commands waiting to run.
+ */
+public class SelectorServer {
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+    // A client that stops reading its replies is not read from until it catches up.
+    private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+    private static final int MAX_LINE_BYTES = 1024 * 1024;
+    private static final int MAX_QUEUED_COMMANDS = 256;
+    // Replies are sent in buffers of about this many characters.
+    private static final int REPLY_CHUNK_CHARS = 16 * 1024;
+    // Commands are decoded as the blocking server's InputStreamReader decodes them.
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private final DBServer server;
+    private final ExecutorService workers;
+    private final long writeTimeoutMillis = Long.getLong("db.selector.writeTimeoutMillis", 10000);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    // Connections whose state a worker has changed, for the selector thread to look at next.
+    private final ConcurrentLinkedQueue<Connection> changed = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean stopped = false;
+
+    public SelectorServer(DBServer server) {
+        this(server, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SelectorServer(DBServer server, int workerThreads) {
+        this.server = server;
+        this.workers = Executors.newFixedThreadPool(workerThreads);
+    }
+
+    public void listenOn(int portNumber) throws IOException {
+        bind(portNumber);
+        serve();
+    }
+
+    /** Opens the listening socket and returns its port, which is useful when portNumber is 0. */
+    public int bind(int portNumber) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(portNumber));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        System.out.println("Server listening on port " + serverChannel.socket().getLocalPort());
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /** Runs the selector loop on the calling thread until stop() is called or the thread is interrupted. */
+    public void serve() throws IOException {
+        try {
+            while (!stopped && !Thread.interrupted()) {
+                selector.select();
+                Connection connection;
+                while ((connection = changed.poll()) != null) {
+                    connection.updateInterest();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            workers.shutdownNow();
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        if (selector != null) selector.wakeup();
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) return;
+        if (key.isAcceptable()) {
+            try {
+                accept();
+            } catch (IOException e) {
+                System.err.println("Server encountered a non-fatal IO error:");
+                e.printStackTrace();
+                System.err.println("Continuing...");
+            }
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) connection.read();
+            if (key.isValid() && key.isWritable()) connection.write();
+            if (key.isValid()) connection.updateInterest();
+        } catch (IOException e) {
+            System.err.println("Connection closed after an IO error: " + e.getMessage());
+            connection.close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            // Replies are small and clients are waiting on them, so do not hold them back to fill packets.
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            System.out.println("Connection established: " + channel.getRemoteAddress());
+        }
+    }
+
+    // One client. The channel and key are only touched on the selector thread; the queues are shared
+    // with the worker running this connection's commands, and guarded by the connection's lock.
+    private class Connection implements Runnable {
+        private final SocketChannel channel;
+        private final Session session;
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private final ArrayDeque<String> commands = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> replies = new ArrayDeque<>();
+        private SelectionKey key;
+        private long pendingBytes = 0;
+        private boolean running = false;
+        private boolean endOfInput = false;
+        private boolean closed = false;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.session = server.newSession();
+        }
+
+        // Queues every complete line read and starts a worker on them if none is running.
+        private void read() throws IOException {
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            boolean start = false;
+            if (count < 0) {
+                // Like readLine, a last line with no newline still counts.
+                if (partialLine.size() > 0) start = queue();
+                synchronized (this) {
+                    endOfInput = true;
+                }
+            } else {
+                readBuffer.flip();
+                while (readBuffer.hasRemaining()) {
+                    byte b = readBuffer.get();
+                    if (b == '\n') {
+                        start |= queue();
+                    } else if (partialLine.size() >= MAX_LINE_BYTES) {
+                        throw new IOException("a command was longer than " + MAX_LINE_BYTES + " bytes");
+                    } else {
+                        partialLine.write(b);
+                    }
+                }
+            }
+            if (start) workers.execute(this);
+        }
+
+        // Returns true if no worker is running this connection's commands yet, so one must be started.
+        private boolean queue() {
+            String command = partialLine.toString(CHARSET);
+            partialLine.reset();
+            if (command.endsWith("\r")) command = command.substring(0, command.length() - 1);
+            synchronized (this) {
+                commands.add(command);
+                if (running) return false;
+                running = true;
+                return true;
+            }
+        }
+
+        // Runs queued commands in order until there are none left.
+        @Override
+        public void run() {
+            while (true) {
+                String command;
+                boolean resume;
+                synchronized (this) {
+                    command = commands.poll();
+                    if (command == null || closed) {
+                        running = false;
+                        // The connection went away while a command ran, so the session is finished with here.
+                        if (closed) session.close();
+                        break;
+                    }
+                    resume = commands.size() == MAX_QUEUED_COMMANDS - 1;
+                }
+                if (resume) {
+                    changed.add(this);
+                    selector.wakeup();
+                }
+                ReplyWriter writer = new ReplyWriter();
+                try {
+                    server.handleCommand(command, session, writer);
+                    writer.write("\n" + DBServer.END_OF_TRANSMISSION + "\n");
+                    writer.flush();
+                } catch (IOException e) {
+                    // The connection closed while the reply was being sent, so the loop ends next time round.
+                }
+            }
+            changed.add(this);
+            selector.wakeup();
+        }
+
+        // Queues part of a reply for the selector thread, first waiting for the client to catch up if it is far behind.
+        // A client that takes nothing for the write timeout is given up on, so that the worker is freed.
+        private void send(ByteBuffer bytes) throws IOException {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + writeTimeoutMillis;
+                long sent = pendingBytes;
+                while (pendingBytes >= MAX_PENDING_OUTPUT && !closed) {
+                    if (pendingBytes < sent) {
+                        sent = pendingBytes;
+                        deadline = System.currentTimeMillis() + writeTimeoutMillis;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        closed = true;
+                        changed.add(this);
+                        selector.wakeup();
+                        throw new IOException("The client stopped reading its replies.");
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while sending a reply.");
+                    }
+                }
+                if (closed) throw new IOException("The connection is closed.");
+                replies.add(bytes);
+                pendingBytes += bytes.remaining();
+            }
+            changed.add(this);
+            selector.wakeup();
+        }
+
+        private void write() throws IOException {
+            synchronized (this) {
+                try {
+                    while (!replies.isEmpty()) {
+                        ByteBuffer reply = replies.peek();
+                        int written = channel.write(reply);
+                        pendingBytes -= written;
+                        if (reply.hasRemaining()) return;
+                        replies.poll();
+                    }
+                } finally {
+                    notifyAll();
+                }
+            }
+        }
+
+        // Called on the selector thread whenever the queues may have changed.
+        private void updateInterest() {
+            if (!key.isValid()) return;
+            int interest = 0;
+            synchronized (this) {
+                if (closed || endOfInput && !running && commands.isEmpty() && replies.isEmpty()) {
+                    close();
+                    return;
+                }
+                if (!replies.isEmpty()) interest |= SelectionKey.OP_WRITE;
+                if (!endOfInput && pendingBytes < MAX_PENDING_OUTPUT && commands.size() < MAX_QUEUED_COMMANDS) {
+                    interest |= SelectionKey.OP_READ;
+                }
+            }
+            key.interestOps(interest);
+        }
+
+        private void close() {
+            synchronized (this) {
+                if (!closed && !running) session.close();
+                closed = true;
+                notifyAll();
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Could not close a connection: " + e.getMessage());
+            }
+        }
+
+        // Encodes a reply a chunk at a time as it is written, and hands each chunk to send().
+        private class ReplyWriter extends Writer {
+            private final StringBuilder chunk = new StringBuilder();
+
+            @Override
+            public void write(char[] characters, int offset, int length) throws IOException {
+                chunk.append(characters, offset, length);
+                if (chunk.length() >= REPLY_CHUNK_CHARS) sendChunk();
+            }
+
+            @Override
+            public void write(String text) throws IOException {
+                chunk.append(text);
+                if (chunk.length() >= REPLY_CHUNK_CHARS) sendChunk();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                sendChunk();
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+
+            private void sendChunk() throws IOException {
+                int end = chunk.length();
+                // Half of a surrogate pair waits for its other half, since they only encode together.
+                if (end > 0 && Character.isHighSurrogate(chunk.charAt(end - 1))) end -= 1;
+                if (end == 0) return;
+                send(CHARSET.encode(CharBuffer.wrap(chunk, 0, end)));
+                chunk.delete(0, end);
+            }
+        }
+    }
+}
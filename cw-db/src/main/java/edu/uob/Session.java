@@ -0,0 +1,35 @@
+package edu.uob;
+
+import java.util.HashMap;
+
+/** Per-connection state, so that one client's USE or PREPARE does not affect another client. */
+public class Session {
+    private FileReading fileReading;
+    private HashMap<String, Plan> prepared = new HashMap<>();
+
+    public Session(FileReading initFileReading) {
+        fileReading = initFileReading;
+    }
+
+    public FileReading getFileReading() {
+        return fileReading;
+    }
+
+    public Plan getPrepared(String name) {
+        return prepared.get(name.toLowerCase());
+    }
+
+    public void putPrepared(String name, Plan plan) {
+        prepared.put(name.toLowerCase(), plan);
+    }
+
+    public boolean removePrepared(String name) {
+        return prepared.remove(name.toLowerCase()) != null;
+    }
+
+    /** Rolls back any transaction left open and releases its locks, for when the client goes away. */
+    public void close() {
+        if (fileReading.inTransaction()) fileReading.rollbackTransaction();
+        fileReading.unlockAll();
+    }
+}
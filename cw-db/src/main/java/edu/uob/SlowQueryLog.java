@@ -0,0 +1,155 @@
+package edu.uob;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Writes every statement that takes at least the threshold to a log file, one line each, with its
+ * phase timings and what it did. Lines are handed to a background thread so that a slow disk never
+ * slows the statements down; once the file passes maxBytes it is rotated to .1, .2 and so on, keeping
+ * at most the given number of old files.
+ *
+ * <p>Each line is tab-separated: the time it finished, the total and per-phase milliseconds, the rows
+ * scanned, the number of comparisons in the WHERE clause, each join as left*right=joined rows, the
+ * rows returned, and last the statement itself.
+ */
+public class SlowQueryLog {
+    public static final String FILE_NAME = "slow.log";
+    // Lines still waiting for the writer past this are dropped, so a stuck disk cannot use up the heap.
+    private static final int MAX_PENDING = 10000;
+
+    private final File file;
+    private final long thresholdNanos;
+    private final long maxBytes;
+    private final int files;
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private Thread writer;
+    private boolean closed = false;
+    private long dropped = 0;
+
+    /** Configured by db.slowlog.millis (default 1000, negative turns it off), db.slowlog.bytes and db.slowlog.files. */
+    public SlowQueryLog(String folderPath) {
+        this(new File(folderPath, FILE_NAME), Long.getLong("db.slowlog.millis", 1000) * 1000000,
+                Long.getLong("db.slowlog.bytes", 10L * 1024 * 1024), Integer.getInteger("db.slowlog.files", 5));
+    }
+
+    public SlowQueryLog(File file, long thresholdNanos, long maxBytes, int files) {
+        this.file = file;
+        this.thresholdNanos = thresholdNanos;
+        this.maxBytes = maxBytes;
+        this.files = files;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    static String format(String command, Metrics.Trace trace) {
+        StringBuilder line = new StringBuilder();
+        line.append(Instant.now()).append("\ttotalMs=").append(millis(trace.getElapsedNanos()));
+        for (Metrics.Phase phase : Metrics.Phase.values()) {
+            line.append('\t').append(phase.name().toLowerCase(Locale.ROOT)).append("Ms=")
+                    .append(millis(trace.getPhaseNanos(phase)));
+        }
+        line.append("\trowsScanned=").append(trace.getRowsScanned());
+        line.append("\tcomparisons=").append(trace.getComparisons());
+        line.append("\tjoins=");
+        for (int i = 0; i < trace.getJoins().size(); i++) {
+            long[] join = trace.getJoins().get(i);
+            if (i > 0) line.append(',');
+            line.append(join[0]).append('*').append(join[1]).append('=').append(join[2]);
+        }
+        line.append("\trowsReturned=").append(trace.getRowsReturned());
+        line.append('\t').append(command.trim()).append('\n');
+        return line.toString();
+    }
+
+    /** Queues the statement for the log if it was slow enough; the trace must be finished. */
+    public void log(String command, Metrics.Trace trace) {
+        if (thresholdNanos < 0 || trace.getElapsedNanos() < thresholdNanos) return;
+        String line = format(command, trace);
+        synchronized (this) {
+            if (closed) return;
+            if (pending.size() >= MAX_PENDING) {
+                dropped += 1;
+                return;
+            }
+            pending.add(line);
+            if (writer == null) {
+                writer = new Thread(this::writeLoop, "slow-query-log");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            notifyAll();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ArrayDeque<String> lines;
+            long droppedLines;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) return;
+                lines = new ArrayDeque<>(pending);
+                pending.clear();
+                droppedLines = dropped;
+                dropped = 0;
+            }
+            write(lines, droppedLines);
+        }
+    }
+
+    private void write(ArrayDeque<String> lines, long droppedLines) {
+        try (FileWriter out = new FileWriter(file, true)) {
+            if (droppedLines > 0) {
+                out.write(Instant.now() + "\t" + droppedLines + " slow statements were not logged.\n");
+            }
+            for (String line : lines) {
+                out.write(line);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write to the slow query log.");
+        }
+        if (file.length() > maxBytes) rotate();
+    }
+
+    // slow.log becomes slow.log.1, slow.log.1 becomes slow.log.2, and the oldest is deleted.
+    private void rotate() {
+        new File(file.getPath() + "." + files).delete();
+        for (int i = files - 1; i >= 1; i--) {
+            new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+        }
+        if (files > 0) {
+            file.renameTo(new File(file.getPath() + ".1"));
+        } else {
+            file.delete();
+        }
+    }
+
+    /** Writes out every queued line and stops the background thread. */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            thread = writer;
+        }
+        if (thread == null) return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
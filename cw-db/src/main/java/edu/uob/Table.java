@@ -1,13 +1,34 @@
 package edu.uob;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
 
 public class Table {
     private String name;
     private ArrayList<Field> fields;
+    // Lower-cased field name -> position of the first field with that name, so lookups ignore case without a scan.
+    private HashMap<String, Integer> fieldIndexes = new HashMap<>();
     private ArrayList<Row> rows;
+    // Primary-key index (id -> row). Built on first lookup, then kept up to date as rows come and go.
+    private HashMap<String, Row> idIndex;
+    // Parsed form of each column, built on first use. Shared with duplicates until either side changes.
+    private TypedColumn[] typedColumns;
+    // Secondary indexes from CREATE INDEX. Shared with duplicates, like the parsed columns, until either side changes.
+    private ArrayList<TableIndex> indexes = new ArrayList<>();
+    private boolean indexesShared = false;
+    // Columns written out by SELECT, or null for all of them.
+    private int[] projection;
 
     public Table(String initName) {
         this.name = initName;
@@ -33,12 +54,33 @@ public class Table {
 
     public ArrayList<String> getRow(int index) {
         ArrayList<String> rowAsStrings = new ArrayList<>();
-        for (int i = 0; i < getNumberOfFields(); i++) {
-            rowAsStrings.add(rows.get(index).getValue(i));
+        for (int column : outputColumns()) {
+            rowAsStrings.add(rows.get(index).getValue(column));
         }
         return rowAsStrings;
     }
 
+    public String getFieldName(int index) {
+        return fields.get(index).getName();
+    }
+
+    /**
+     * Shows only the given columns, in the given order, wherever rows are written out (writeTo,
+     * getRow, printTable). Nothing is copied: the other columns stay in the rows, unseen.
+     */
+    public void project(int[] columns) {
+        projection = columns;
+    }
+
+    private int[] outputColumns() {
+        if (projection != null) return projection;
+        int[] columns = new int[fields.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        return columns;
+    }
+
     public ArrayList<String> getFields() {
         ArrayList<String> fieldsAsStrings = new ArrayList<>();
         for (int i = 0; i < getNumberOfFields(); i++) {
@@ -47,66 +89,242 @@ public class Table {
         return fieldsAsStrings;
     }
 
+    private static String fieldKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
     public boolean existsField(String name) {
-        for (Field field : this.fields) {
-            if (field.getName().equalsIgnoreCase(name)) {
-                return true;
-            }
-        }
-        return false;
+        return fieldIndexes.containsKey(fieldKey(name));
     }
 
     public String getRealField(String name) {
-        for (int i = 0; i < this.fields.size(); i++) {
-            if (fields.get(i).getName().equalsIgnoreCase(name)) {
-                return fields.get(i).getName();
-            }
-        }
-        return "";
+        int index = getFieldIndex(name);
+        return index < 0 ? "" : fields.get(index).getName();
     }
 
+    /** The position of the first field with this name, ignoring case, or -1 if there is none. */
     public int getFieldIndex(String name) {
-        for (int i = 0; i < this.fields.size(); i++) {
-            if (fields.get(i).getName().equalsIgnoreCase(name)) {
-                return i;
+        return fieldIndexes.getOrDefault(fieldKey(name), -1);
+    }
+
+    private void indexFields() {
+        fieldIndexes.clear();
+        for (int i = 0; i < fields.size(); i++) {
+            fieldIndexes.putIfAbsent(fieldKey(fields.get(i).getName()), i);
+        }
+    }
+
+    public Row getRowById(String id) {
+        if (idIndex == null) {
+            idIndex = new HashMap<>(rows.size() * 2);
+            for (Row row : rows) {
+                indexRow(row);
             }
         }
-        return 0;
+        return idIndex.get(id);
+    }
+
+    private void indexRow(Row row) {
+        if (row.getValues().size() > 0) {
+            idIndex.putIfAbsent(row.getValue(0), row);
+        }
     }
 
     public void changeRow(int rowIndex, int colIndex, String value) {
+        changeIndexedValue(rowIndex, colIndex, value);
         this.rows.get(rowIndex).changeValue(colIndex, value);
+        if (colIndex == 0) idIndex = null;
+        typedColumns = null;
+    }
+
+    public void changeRow(Row row, int colIndex, String value) {
+        if (builtIndexOn(colIndex) != null) changeIndexedValue(positionOf(row, colIndex), colIndex, value);
+        row.changeValue(colIndex, value);
+        if (colIndex == 0) idIndex = null;
+        typedColumns = null;
+    }
+
+    // Finds the row through an index on the column if there is one, since that avoids a scan.
+    private int positionOf(Row row, int colIndex) {
+        TableIndex index = builtIndexOn(colIndex);
+        int position = index == null ? -1 : index.find(row.getValue(colIndex), i -> rows.get(i) == row);
+        return position >= 0 ? position : rows.indexOf(row);
+    }
+
+    private void changeIndexedValue(int rowIndex, int colIndex, String value) {
+        if (indexes.size() == 0 || rowIndex < 0) return;
+        ownIndexes();
+        for (TableIndex index : indexes) {
+            if (index.getColumn() == colIndex) {
+                index.remove(rows.get(rowIndex).getValue(colIndex), rowIndex);
+                index.add(value, rowIndex);
+            }
+        }
+    }
+
+    public ArrayList<TableIndex> getIndexes() {
+        return indexes;
+    }
+
+    public TableIndex getIndex(String name) {
+        for (TableIndex index : indexes) {
+            if (index.getName().equalsIgnoreCase(name)) return index;
+        }
+        return null;
+    }
+
+    public void addIndex(String name, String attribute) {
+        ownIndexes();
+        indexes.add(new TableIndex(name, attribute));
+    }
+
+    public boolean removeIndex(String name) {
+        TableIndex index = getIndex(name);
+        if (index == null) return false;
+        ownIndexes();
+        indexes.remove(getIndex(name));
+        return true;
+    }
+
+    /** An index on the column, built if it has not been yet, or null if the column has none. */
+    public TableIndex getIndexOn(int column) {
+        for (TableIndex index : indexes) {
+            if (index.getAttribute().equalsIgnoreCase(fields.get(column).getName())) {
+                synchronized (index) {
+                    if (!index.isBuiltFor(column)) index.build(this, column);
+                }
+                return index;
+            }
+        }
+        return null;
+    }
+
+    // Indexes that have not been built yet need no upkeep.
+    private TableIndex builtIndexOn(int column) {
+        for (TableIndex index : indexes) {
+            if (index.getColumn() == column) return index;
+        }
+        return null;
+    }
+
+    // Gives this table its own copies of any indexes it shares, before it changes them.
+    private void ownIndexes() {
+        if (!indexesShared) return;
+        ArrayList<TableIndex> owned = new ArrayList<>(indexes.size());
+        for (TableIndex index : indexes) {
+            owned.add(index.copy());
+        }
+        indexes = owned;
+        indexesShared = false;
+    }
+
+    // After a change to the columns, positions no longer line up with the trees, so start them afresh.
+    private void unbuildIndexes() {
+        ArrayList<TableIndex> unbuilt = new ArrayList<>(indexes.size());
+        for (TableIndex index : indexes) {
+            unbuilt.add(index.unbuilt());
+        }
+        indexes = unbuilt;
+        indexesShared = false;
+    }
+
+    private void shareIndexes(Table table) {
+        indexes = table.indexes;
+        indexesShared = true;
+        table.indexesShared = true;
+    }
+
+    public TypedColumn getTypedColumn(int index) {
+        TypedColumn[] columns = sharedTypedColumns();
+        synchronized (columns) {
+            if (columns[index] == null) {
+                columns[index] = new TypedColumn(rows, index);
+            }
+            return columns[index];
+        }
+    }
+
+    /** Sets the parsed form of a column, for a reader that already has it; the rows must all be added. */
+    public void setTypedColumn(int index, TypedColumn column) {
+        TypedColumn[] columns = sharedTypedColumns();
+        synchronized (columns) {
+            columns[index] = column;
+        }
+    }
+
+    private TypedColumn[] sharedTypedColumns() {
+        TypedColumn[] columns = typedColumns;
+        if (columns == null || columns.length != fields.size()) {
+            columns = new TypedColumn[fields.size()];
+            typedColumns = columns;
+        }
+        return columns;
     }
 
     private void removeField(int index) {
         this.fields.remove(index);
+        indexFields();
     }
 
     public void removeColumn(int index) {
+        if (index == 0) idIndex = null;
+        typedColumns = null;
+        String removed = fields.get(index).getName();
+        unbuildIndexes();
+        indexes.removeIf(tableIndex -> tableIndex.getAttribute().equalsIgnoreCase(removed));
         removeField(index);
         for (int i = 0; i < this.rows.size(); i++) {
             this.rows.set((i), rows.get(i).removeValue(index));
         }
     }
 
-    public void removeColumnsAfter(int index) {
-        int width = this.getNumberOfFields();
-        fields.subList(index, fields.size()).clear();
-        for (int i = 0; i < this.getNumberOfRows(); i++) {
-            rows.get(i).getValues().subList(index, width).clear();
-        }
-    }
-
     public void copy(Table table, boolean id) {
         this.rows.clear();
         this.fields.clear();
+        this.fieldIndexes.clear();
+        this.idIndex = null;
+        this.indexes = new ArrayList<>();
+        this.indexesShared = false;
+        this.projection = null;
         this.addFields(table.getFields(), id);
         for (int i = 0; i < table.getNumberOfRows(); i++) {
             this.addRows(table.getRows().get(i).getValues());
         }
+        // Same cells in the same places, so the parsed columns and indexes still hold.
+        if (fields.size() == table.fields.size()) {
+            this.typedColumns = table.sharedTypedColumns();
+            shareIndexes(table);
+        }
+    }
+
+    public Table duplicate() {
+        Table table = new Table(this.name);
+        for (Field field : this.fields) {
+            table.addField(field.getName());
+        }
+        table.rows.ensureCapacity(this.rows.size());
+        for (Row row : this.rows) {
+            table.rows.add(new Row(row.getValues()));
+        }
+        table.typedColumns = sharedTypedColumns();
+        table.shareIndexes(this);
+        return table;
+    }
+
+    // Rough heap footprint, used by the table cache to stay within its memory budget.
+    public long estimateBytes() {
+        long bytes = 64 + 48L * fields.size();
+        for (Row row : this.rows) {
+            bytes += 40 + 8L * row.getValues().size();
+            for (String value : row.getValues()) {
+                bytes += 40 + value.length();
+            }
+        }
+        return bytes;
     }
 
     public void fillRows() {
+        typedColumns = null;
         for (int i = 0; i < rows.size(); i++) {
             rows.set(i, rows.get(i).addValueReturn());
         }
@@ -115,6 +333,7 @@ public class Table {
     public void addField(String newField) {
         Field field = new Field(newField);
         this.fields.add(field);
+        fieldIndexes.putIfAbsent(fieldKey(newField), fields.size() - 1);
     }
 
 
@@ -123,15 +342,10 @@ public class Table {
             addField("id");
         }
         for (int i = 0; i < newFields.size(); i++) {
-            Field field = new Field(newFields.get(i));
-            this.fields.add(field);
+            addField(newFields.get(i));
         }
     }
 
-    public void changeField(int index, String value) {
-        fields.set(index, new Field(value));
-    }
-
     private int getNextID() {
         int maxID = 0;
         for (int i = 0; i < this.rows.size(); i++) {
@@ -143,19 +357,12 @@ public class Table {
         return maxID + 1;
     }
 
-    private int getNextConfigID(FileReading fileReading) {
-        String config = fileReading.readConfig(this.name);
-        return Integer.parseInt(config) + 1;
-    }
-
-
-
-    public void addRowsFile(ArrayList<String> newRowValues, FileReading fileReading) {
+    public void addRows(ArrayList<String> newRowValues) {
         Row row = new Row();
         int rowIndex = 0;
         if (this.getNumberOfFields() > newRowValues.size()) {
             row.addValue();
-            row.changeValue(0, Integer.toString(getNextConfigID(fileReading)));
+            row.changeValue(0, Integer.toString(getNextID()));
             rowIndex += 1;
         }
         for (int i = 0; i < newRowValues.size(); i++) {
@@ -163,69 +370,137 @@ public class Table {
             row.changeValue(rowIndex, newRowValues.get(i));
             rowIndex += 1;
         }
-        this.rows.add(row);
+        addRow(row);
     }
 
+    public void addRow(Row row) {
+        this.rows.add(row);
+        if (idIndex != null) indexRow(row);
+        typedColumns = null;
+        indexRowValues(row, rows.size() - 1);
+    }
 
+    private void indexRowValues(Row row, int position) {
+        if (indexes.size() == 0) return;
+        ownIndexes();
+        for (TableIndex index : indexes) {
+            if (index.getColumn() >= 0) index.add(row.getValue(index.getColumn()), position);
+        }
+    }
 
-    public void addRows(ArrayList<String> newRowValues) {
-        Row row = new Row();
-        int rowIndex = 0;
-        if (this.getNumberOfFields() > newRowValues.size()) {
-            row.addValue();
-            row.changeValue(0, Integer.toString(getNextID()));
-            rowIndex += 1;
+    // Replaces the row with the same id in place, or appends it if there is none.
+    public void upsertRow(ArrayList<String> values) {
+        Row existing = getRowById(values.get(0));
+        if (existing == null) {
+            addRow(new Row(values));
+            return;
         }
-        for (int i = 0; i < newRowValues.size(); i++) {
-            row.addValue();
-            row.changeValue(rowIndex, newRowValues.get(i));
-            rowIndex += 1;
+        for (int i = 0; i < values.size(); i++) {
+            if (builtIndexOn(i) != null) {
+                changeRow(existing, i, values.get(i));
+            } else {
+                existing.changeValue(i, values.get(i));
+            }
         }
-        this.rows.add(row);
+        typedColumns = null;
     }
 
     public void removeRows(int index) {
-        rows.remove(index);
+        BitSet removedPositions = new BitSet();
+        removedPositions.set(index);
+        removeIndexedPositions(removedPositions);
+        Row removed = rows.remove(index);
+        typedColumns = null;
+        if (idIndex != null && removed.getValues().size() > 0) {
+            idIndex.remove(removed.getValue(0), removed);
+        }
+    }
+
+    // Removes every row whose id is in ids with a single compaction of the row list.
+    public void removeRowsById(Collection<String> ids) {
+        Set<Row> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String id : ids) {
+            Row row = getRowById(id);
+            if (row != null) {
+                doomed.add(row);
+                idIndex.remove(id, row);
+            }
+        }
+        if (doomed.size() > 0) {
+            BitSet removedPositions = new BitSet(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                if (doomed.contains(rows.get(i))) removedPositions.set(i);
+            }
+            removeIndexedPositions(removedPositions);
+            rows.removeIf(doomed::contains);
+            typedColumns = null;
+        }
+    }
+
+    private void removeIndexedPositions(BitSet removed) {
+        if (indexes.size() == 0) return;
+        ownIndexes();
+        for (TableIndex index : indexes) {
+            if (index.getColumn() >= 0) index.removePositions(removed, rows.size());
+        }
+    }
+
+    // Keeps only the rows at the given positions, in that order.
+    public void selectRows(int[] positions) {
+        ArrayList<Row> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(rows.get(position));
+        }
+        rows = selected;
+        idIndex = null;
+        typedColumns = null;
+        unbuildIndexes();
     }
 
 
     public void writeToFile(FileWriter writer) {
-        try {
-            for (int i = 0; i < this.fields.size(); i++) {
-                writer.write(this.fields.get(i).getName());
-                if (i < this.fields.size() - 1) {
+        try (BufferedWriter buffWriter = new BufferedWriter(writer)) {
+            writeTo(buffWriter);
+        } catch (IOException e) {
+            System.out.println("Unable to write to a file.");
+        }
+    }
+
+    // Writes the header line and then each row as it goes, so the caller never holds the whole result.
+    public void writeTo(Writer writer) throws IOException {
+        int[] columns = outputColumns();
+        for (int i = 0; i < columns.length; i++) {
+            writer.write(this.fields.get(columns[i]).getName());
+            if (i < columns.length - 1) {
+                writer.write("\t");
+            }
+        }
+        writer.write("\n");
+        for (int i = 0; i < this.rows.size(); i++) {
+            ArrayList<String> values = this.rows.get(i).getValues();
+            for (int j = 0; j < columns.length; j++) {
+                writer.write(values.get(columns[j]));
+                if (j < columns.length - 1) {
                     writer.write("\t");
                 }
             }
             writer.write("\n");
-            for (int i = 0; i < this.rows.size(); i++) {
-                for (int j = 0; j < this.fields.size(); j++) {
-                    writer.write(this.rows.get(i).getValue(j));
-                    if (j < this.fields.size() - 1) {
-                        writer.write("\t");
-                    }
-                }
-                writer.write("\n");
-            }
-            writer.flush();
-            writer.close();
-        } catch (IOException e) {
-            System.out.println("Unable to write to a file.");
         }
     }
 
     public void printTable() {
-        for (int i = 0; i < this.fields.size(); i++) {
-            System.out.print(this.fields.get(i).getName());
-            if (i < this.fields.size() - 1) {
+        int[] columns = outputColumns();
+        for (int i = 0; i < columns.length; i++) {
+            System.out.print(this.fields.get(columns[i]).getName());
+            if (i < columns.length - 1) {
                 System.out.print("\t");
             }
         }
         System.out.print("\n");
         for (int i = 0; i < this.rows.size(); i++) {
-            for (int j = 0; j < this.fields.size(); j++) {
-                System.out.print(this.rows.get(i).getValue(j));
-                if (j < this.fields.size() - 1) {
+            for (int j = 0; j < columns.length; j++) {
+                System.out.print(this.rows.get(i).getValue(columns[j]));
+                if (j < columns.length - 1) {
                     System.out.print("\t");
                 }
             }
@@ -235,23 +510,13 @@ public class Table {
     }
 
     public String writeToString(String msg) {
-        msg = msg + "\n";
-        for (int i = 0; i < this.fields.size(); i++) {
-            msg = msg + this.fields.get(i).getName();
-            if (i < this.fields.size() - 1) {
-                msg = msg + "\t";
-            }
-        }
-        msg = msg + "\n";
-        for (int i = 0; i < this.rows.size(); i++) {
-            for (int j = 0; j < this.fields.size(); j++) {
-                msg = msg + this.rows.get(i).getValue(j);
-                if (j < this.fields.size() - 1) {
-                    msg = msg + "\t";
-                }
-            }
-            msg = msg + "\n";
+        StringWriter writer = new StringWriter();
+        writer.write(msg + "\n");
+        try {
+            writeTo(writer);
+        } catch (IOException e) {
+            // A StringWriter never throws.
         }
-        return msg;
+        return writer.toString();
     }
 }
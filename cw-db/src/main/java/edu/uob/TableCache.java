@@ -0,0 +1,323 @@
+package edu.uob;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps parsed tables resident between statements so that repeated reads skip the .tab parser.
+ * Entries are keyed by database folder and table name, evicted least-recently-used once the
+ * estimated size goes over the budget, and dirty entries are written back on eviction or flush.
+ *
+ * <p>A cached table is never changed once it is put, so every put of a write is a new version of the
+ * table, stamped with an increasing commit number. A reader that opens a snapshot sees each table as
+ * it was at that commit: older versions are kept for as long as an open snapshot could still read
+ * them, and a table holding any is not evicted. Neither is a table a writer has pinned, so that a
+ * snapshot never has to read a file that a writer holding the table's lock may be about to replace.
+ *
+ * <p>Files are written outside the cache's own lock, under a lock per table, so that writing back one
+ * large table never holds up reads and commits of any other. An entry being written back stays
+ * resident until it is on disk, so nobody reads the file while it is half written.
+ */
+public class TableCache {
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long budget;
+    private long usedBytes = 0;
+    private long commits = 0;
+    // Open snapshots, as commit number to how many readers have one at that commit.
+    private final TreeMap<Long, Integer> snapshots = new TreeMap<>();
+    // Tables that writers have locked, with how many hold each; they stay resident until unpinned.
+    private final HashMap<String, Integer> pinned = new HashMap<>();
+    // Held while a table's files are written, so that two write-backs of one table land in the order they were taken.
+    private final ConcurrentHashMap<String, Object> writeLocks = new ConcurrentHashMap<>();
+
+    private static class Version {
+        private final long version;
+        private final Table table;
+
+        private Version(long version, Table table) {
+            this.version = version;
+            this.table = table;
+        }
+    }
+
+    private static class Entry {
+        private Table table;
+        private boolean dirty;
+        private long bytes;
+        // The commit that put this table; tables loaded from disk are older than any snapshot.
+        private long version = 0;
+        // Versions replaced since an open snapshot began, newest first.
+        private ArrayList<Version> older = new ArrayList<>();
+        // The table's .info id counter, once something has read or written it.
+        private String config;
+        private boolean configDirty;
+        // Set while its files are being written, when the file on disk may not be the table yet.
+        private boolean writing;
+
+        private Entry(Table table, boolean dirty) {
+            this.table = table;
+            this.dirty = dirty;
+            this.bytes = table.estimateBytes();
+        }
+    }
+
+    public TableCache() {
+        this(Long.getLong("db.cache.bytes", DEFAULT_BUDGET));
+    }
+
+    public TableCache(long budgetInBytes) {
+        budget = budgetInBytes;
+    }
+
+    public static String key(String databasePath, String tableName) {
+        return databasePath + File.separator + tableName.toLowerCase();
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /** Returns a private copy of the cached table, or null if it is not resident. */
+    public synchronized Table get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        return entry.table.duplicate();
+    }
+
+    /**
+     * Returns a private copy of the table as it was when the snapshot opened, or null if it is not
+     * resident or did not exist then.
+     */
+    public synchronized Table get(String key, long snapshot) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.version <= snapshot) return entry.table.duplicate();
+        for (Version version : entry.older) {
+            if (version.version <= snapshot) return version.table.duplicate();
+        }
+        return null;
+    }
+
+    /** Puts a table read from disk (clean) or a statement's committed result (dirty) in the cache. */
+    public void put(String key, Table table, boolean dirty) {
+        LinkedHashMap<String, Entry> victims = new LinkedHashMap<>();
+        synchronized (this) {
+            Entry previous = entries.remove(key);
+            if (previous != null && !dirty) {
+                // A table read from disk is never newer than the one already resident.
+                entries.put(key, previous);
+                return;
+            }
+            Entry entry = new Entry(table, dirty);
+            if (dirty) entry.version = ++commits;
+            if (previous != null) {
+                usedBytes -= previous.bytes;
+                entry.dirty = dirty || previous.dirty;
+                entry.config = previous.config;
+                entry.configDirty = previous.configDirty;
+                entry.older = previous.older;
+                entry.older.add(0, new Version(previous.version, previous.table));
+                prune(entry);
+            }
+            entries.put(key, entry);
+            usedBytes += entry.bytes;
+            if (entry.bytes > budget) {
+                // Too big to keep resident, so write it straight through; it stays only while a snapshot needs an older version.
+                victims.put(key, entry);
+            } else {
+                evict(victims);
+            }
+        }
+        drop(victims);
+    }
+
+    // Writes back each victim, then drops it unless it was replaced, changed or pinned meanwhile, or is still needed.
+    private void drop(LinkedHashMap<String, Entry> victims) {
+        for (Map.Entry<String, Entry> victim : victims.entrySet()) {
+            flush(victim.getKey());
+            synchronized (this) {
+                Entry entry = victim.getValue();
+                if (entries.get(victim.getKey()) == entry && !entry.dirty && !entry.configDirty && entry.older.size() == 0
+                        && !pinned.containsKey(victim.getKey())) {
+                    entries.remove(victim.getKey());
+                    usedBytes -= entry.bytes;
+                }
+            }
+        }
+    }
+
+    /** Returns the cached id counter, or null if the table or its counter is not resident. */
+    public synchronized String getConfig(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.config;
+    }
+
+    /** Records the id counter against a resident table; returns false if the table is not resident. */
+    public synchronized boolean putConfig(String key, String config, boolean dirty) {
+        Entry entry = entries.get(key);
+        if (entry == null) return false;
+        entry.config = config;
+        entry.configDirty = entry.configDirty || dirty;
+        return true;
+    }
+
+    /**
+     * Writes the table and its id counter back to disk if they have changed since they were last
+     * written. Returns false if they could not be, in which case they are still dirty.
+     */
+    public boolean flush(String key) {
+        synchronized (writeLock(key)) {
+            Table table = null;
+            String config = null;
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry == null) return true;
+                if (entry.dirty) {
+                    table = entry.table;
+                    entry.dirty = false;
+                }
+                if (entry.configDirty) {
+                    config = entry.config;
+                    entry.configDirty = false;
+                }
+                if (table == null && config == null) return true;
+                entry.writing = true;
+            }
+            // A cached table is never changed, so it can be written out without the cache's lock.
+            boolean tableWritten = false;
+            boolean configWritten = false;
+            try {
+                tableWritten = table == null || FileReading.writeTable(key, table);
+                configWritten = config == null || FileReading.writeConfig(key, config);
+            } finally {
+                synchronized (this) {
+                    entry.writing = false;
+                    entry.dirty = entry.dirty || !tableWritten;
+                    entry.configDirty = entry.configDirty || !configWritten;
+                }
+            }
+            return tableWritten && configWritten;
+        }
+    }
+
+    public void flushAll() {
+        ArrayList<String> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(entries.keySet());
+        }
+        for (String key : keys) {
+            flush(key);
+        }
+    }
+
+    /** Flushes every table of the database; returns false if any could not be written. */
+    public boolean flushDatabase(String databasePath) {
+        String prefix = databasePath + File.separator;
+        ArrayList<String> keys = new ArrayList<>();
+        synchronized (this) {
+            for (String key : entries.keySet()) {
+                if (key.startsWith(prefix)) keys.add(key);
+            }
+        }
+        boolean flushed = true;
+        for (String key : keys) {
+            flushed = flush(key) && flushed;
+        }
+        return flushed;
+    }
+
+    // Waits for a write-back of the table that is under way, so that it cannot bring back a dropped table's file.
+    public void invalidate(String key) {
+        synchronized (writeLock(key)) {
+            synchronized (this) {
+                Entry entry = entries.remove(key);
+                if (entry != null) usedBytes -= entry.bytes;
+            }
+        }
+    }
+
+    private Object writeLock(String key) {
+        return writeLocks.computeIfAbsent(key, k -> new Object());
+    }
+
+    public void invalidateDatabase(String databasePath) {
+        String prefix = databasePath + File.separator;
+        ArrayList<String> removed = new ArrayList<>();
+        synchronized (this) {
+            for (String key : entries.keySet()) {
+                if (key.startsWith(prefix)) removed.add(key);
+            }
+        }
+        for (String key : removed) invalidate(key);
+    }
+
+    /** Keeps the table resident, once it is loaded, until a matching unpin. */
+    public synchronized void pin(String key) {
+        pinned.merge(key, 1, Integer::sum);
+    }
+
+    public synchronized void unpin(String key) {
+        if (pinned.merge(key, -1, Integer::sum) == 0) pinned.remove(key);
+    }
+
+    /** Opens a snapshot of every table as of the latest commit; returns its commit number. */
+    public synchronized long openSnapshot() {
+        snapshots.merge(commits, 1, Integer::sum);
+        return commits;
+    }
+
+    /**
+     * Closes a snapshot, dropping every old version that no other open snapshot can read. Tables that
+     * were kept over the budget only for those versions can then be evicted.
+     */
+    public void closeSnapshot(long snapshot) {
+        LinkedHashMap<String, Entry> victims = new LinkedHashMap<>();
+        synchronized (this) {
+            if (snapshots.merge(snapshot, -1, Integer::sum) == 0) snapshots.remove(snapshot);
+            for (Entry entry : entries.values()) {
+                if (entry.older.size() > 0) prune(entry);
+            }
+            evict(victims);
+        }
+        drop(victims);
+    }
+
+    // A version is needed while some snapshot opened at or after its commit and before the next one.
+    private void prune(Entry entry) {
+        long until = entry.version;
+        Iterator<Version> versions = entry.older.iterator();
+        while (versions.hasNext()) {
+            Version version = versions.next();
+            Long snapshot = snapshots.ceilingKey(version.version);
+            if (snapshot == null || snapshot >= until) versions.remove();
+            until = version.version;
+        }
+    }
+
+    // Clean tables are dropped at once; dirty ones are left to the caller to write back and then drop.
+    private void evict(LinkedHashMap<String, Entry> victims) {
+        long remaining = usedBytes;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (remaining > budget && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            Entry entry = eldest.getValue();
+            if (entry.older.size() > 0 || entry.writing || pinned.containsKey(eldest.getKey())) continue;
+            remaining -= entry.bytes;
+            if (entry.dirty || entry.configDirty) {
+                victims.put(eldest.getKey(), entry);
+            } else {
+                usedBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * A secondary index made by CREATE INDEX: one column's values in B+trees, so that a range
+ * comparison finds its rows without testing every row of the table.
+ *
+ * <p>A range comparison against an unquoted value only ever matches plain numbers, and one against
+ * a quoted value only ever matches cells that are neither plain numbers nor keywords (see
+ * Comparison). The two kinds are kept in separate trees, ordered the way those comparisons order
+ * them: by double, or by String.compareTo. Keyword cells match no range and are left out.
+ *
+ * <p>The trees hold row positions and are built on first use, for the column the attribute is at.
+ */
+public class TableIndex {
+    private final String name;
+    private final String attribute;
+    private int column = -1;
+    private BPlusTree<Double> numbers;
+    private BPlusTree<String> strings;
+
+    public TableIndex(String name, String attribute) {
+        this.name = name;
+        this.attribute = attribute;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public synchronized boolean isBuiltFor(int column) {
+        return this.column == column;
+    }
+
+    /** The column the trees were built for, or -1 if they have not been built. */
+    public synchronized int getColumn() {
+        return column;
+    }
+
+    /** Indexes the column's cells as they are now. */
+    public synchronized void build(Table table, int column) {
+        TypedColumn typed = table.getTypedColumn(column);
+        int rows = table.getNumberOfRows();
+        Integer[] order = new Integer[rows];
+        int numberCount = 0;
+        int stringCount = 0;
+        // Numbers first, then strings, each in position order so that a stable sort keeps ties that way.
+        for (int i = 0; i < rows; i++) {
+            if (typed.isPlainNumber(i)) order[numberCount++] = i;
+        }
+        for (int i = 0; i < rows; i++) {
+            if (!typed.isPlainNumber(i) && !typed.isKeyword(i)) order[numberCount + stringCount++] = i;
+        }
+        ArrayList<Row> cells = table.getRows();
+        Arrays.sort(order, 0, numberCount, (a, b) -> Double.compare(numberKey(typed.getNumber(a)), numberKey(typed.getNumber(b))));
+        Arrays.sort(order, numberCount, numberCount + stringCount, (a, b) -> cells.get(a).getValue(column).compareTo(cells.get(b).getValue(column)));
+        ArrayList<Double> numberKeys = new ArrayList<>(numberCount);
+        int[] numberPositions = new int[numberCount];
+        for (int i = 0; i < numberCount; i++) {
+            numberKeys.add(numberKey(typed.getNumber(order[i])));
+            numberPositions[i] = order[i];
+        }
+        ArrayList<String> stringKeys = new ArrayList<>(stringCount);
+        int[] stringPositions = new int[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            stringKeys.add(cells.get(order[numberCount + i]).getValue(column));
+            stringPositions[i] = order[numberCount + i];
+        }
+        numbers = BPlusTree.load(numberKeys, numberPositions);
+        strings = BPlusTree.load(stringKeys, stringPositions);
+        this.column = column;
+    }
+
+    // Keeps the definition, and the trees only if they have been built.
+    public synchronized TableIndex copy() {
+        TableIndex index = new TableIndex(name, attribute);
+        if (column >= 0) {
+            index.column = column;
+            index.numbers = numbers.copy();
+            index.strings = strings.copy();
+        }
+        return index;
+    }
+
+    public TableIndex unbuilt() {
+        return new TableIndex(name, attribute);
+    }
+
+    // The primitive comparisons treat -0.0 and 0.0 as equal, so they share a key.
+    private static Double numberKey(double number) {
+        return number + 0.0;
+    }
+
+    public void add(String value, int position) {
+        if (TypedColumn.isKeyword(value)) return;
+        if (TypedColumn.isPlainNumber(value)) {
+            numbers.insert(numberKey(Double.parseDouble(value)), position);
+        } else {
+            strings.insert(value, position);
+        }
+    }
+
+    public void remove(String value, int position) {
+        if (TypedColumn.isKeyword(value)) return;
+        if (TypedColumn.isPlainNumber(value)) {
+            numbers.remove(numberKey(Double.parseDouble(value)), position);
+        } else {
+            strings.remove(value, position);
+        }
+    }
+
+    /** The position of a row holding value that isRow accepts, or -1 if there is none. */
+    public int find(String value, IntPredicate isRow) {
+        if (TypedColumn.isKeyword(value)) return -1;
+        int[] found = {-1};
+        if (TypedColumn.isPlainNumber(value)) {
+            Double key = numberKey(Double.parseDouble(value));
+            numbers.range(key, true, key, true, position -> {
+                if (found[0] < 0 && isRow.test(position)) found[0] = position;
+            });
+        } else {
+            strings.range(value, true, value, true, position -> {
+                if (found[0] < 0 && isRow.test(position)) found[0] = position;
+            });
+        }
+        return found[0];
+    }
+
+    // Rebuilds the trees without the removed positions, moving every later position down to close the gaps.
+    public void removePositions(BitSet removed, int rows) {
+        int[] shifted = new int[rows];
+        int gap = 0;
+        for (int i = 0; i < rows; i++) {
+            if (removed.get(i)) gap += 1;
+            shifted[i] = i - gap;
+        }
+        numbers = compact(numbers, removed, shifted);
+        strings = compact(strings, removed, shifted);
+    }
+
+    private static <K extends Comparable<K>> BPlusTree<K> compact(BPlusTree<K> tree, BitSet removed, int[] shifted) {
+        ArrayList<K> keys = new ArrayList<>(tree.size());
+        int[] positions = new int[tree.size()];
+        tree.forEach((key, position) -> {
+            if (!removed.get(position)) {
+                positions[keys.size()] = shifted[position];
+                keys.add(key);
+            }
+        });
+        return BPlusTree.load(keys, positions);
+    }
+
+    /**
+     * A bitmap of the positions of the rows where the indexed cell stands in a range comparison
+     * with the value. quoted, number and value are as Comparison works them out.
+     */
+    public BitSet select(String comparator, boolean quoted, double number, String value) {
+        // Collected in a bitmap, since the trees give key order and conditions work on position bitmaps.
+        BitSet matches = new BitSet();
+        if (quoted) {
+            range(strings, comparator, value, matches);
+        } else {
+            range(numbers, comparator, numberKey(number), matches);
+        }
+        return matches;
+    }
+
+    private static <K extends Comparable<K>> void range(BPlusTree<K> tree, String comparator, K value, BitSet matches) {
+        switch (comparator) {
+            case "<":
+                tree.range(null, false, value, false, matches::set);
+                break;
+            case "<=":
+                tree.range(null, false, value, true, matches::set);
+                break;
+            case ">":
+                tree.range(value, false, null, false, matches::set);
+                break;
+            default:
+                tree.range(value, true, null, false, matches::set);
+                break;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Equi-join of two tables on one column each. Rows are emitted in the same order the original
+ * nested loop produced them (left row order, then right row order), whichever strategy runs.
+ */
+public class TableJoin {
+    public enum Strategy { HASH, SORT_MERGE }
+
+    // Hashing a key costs a few comparisons' worth of work, so merging wins when little sorting is needed.
+    private static final int HASH_COST_FACTOR = 3;
+
+    private final Table left;
+    private final Table right;
+    private final int leftIndex;
+    private final int rightIndex;
+    private int[] pairLeft = new int[16];
+    private int[] pairRight = new int[16];
+    private int pairCount = 0;
+
+    public TableJoin(Table left, int leftIndex, Table right, int rightIndex) {
+        this.left = left;
+        this.right = right;
+        this.leftIndex = leftIndex;
+        this.rightIndex = rightIndex;
+    }
+
+    private String leftKey(int i) {
+        return left.getRows().get(i).getValue(leftIndex);
+    }
+
+    private String rightKey(int j) {
+        return right.getRows().get(j).getValue(rightIndex);
+    }
+
+    private static boolean isSorted(Table table, int index) {
+        ArrayList<Row> rows = table.getRows();
+        for (int i = 1; i < rows.size(); i++) {
+            if (rows.get(i - 1).getValue(index).compareTo(rows.get(i).getValue(index)) > 0) return false;
+        }
+        return true;
+    }
+
+    private static double sortCost(int rows, boolean sorted) {
+        if (sorted || rows < 2) return rows;
+        return rows * (Math.log(rows) / Math.log(2));
+    }
+
+    public Strategy chooseStrategy() {
+        int n = left.getNumberOfRows();
+        int m = right.getNumberOfRows();
+        double mergeCost = sortCost(n, isSorted(left, leftIndex)) + sortCost(m, isSorted(right, rightIndex));
+        double hashCost = (double) HASH_COST_FACTOR * (n + m);
+        return mergeCost < hashCost ? Strategy.SORT_MERGE : Strategy.HASH;
+    }
+
+    /** Appends the joined rows to target, whose fields must already be set up. */
+    public void execute(Table target) {
+        execute(target, chooseStrategy());
+    }
+
+    public void execute(Table target, Strategy strategy) {
+        pairCount = 0;
+        if (strategy == Strategy.SORT_MERGE) {
+            sortMergeJoin();
+        } else if (right.getNumberOfRows() <= left.getNumberOfRows()) {
+            hashJoinBuildRight();
+        } else {
+            hashJoinBuildLeft();
+        }
+        emitRows(target);
+    }
+
+    private void addPair(int i, int j) {
+        if (pairCount == pairLeft.length) {
+            pairLeft = Arrays.copyOf(pairLeft, Math.max(16, pairCount * 2));
+            pairRight = Arrays.copyOf(pairRight, Math.max(16, pairCount * 2));
+        }
+        pairLeft[pairCount] = i;
+        pairRight[pairCount] = j;
+        pairCount += 1;
+    }
+
+    private static HashMap<String, int[]> buildBuckets(int rows, IntFunction<String> key) {
+        // Each bucket is {size, position, position, ...} so that probing allocates nothing.
+        HashMap<String, int[]> buckets = new HashMap<>(rows * 2);
+        for (int i = 0; i < rows; i++) {
+            String value = key.apply(i);
+            int[] bucket = buckets.get(value);
+            if (bucket == null) {
+                bucket = new int[2];
+            } else if (bucket[0] + 1 == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            }
+            bucket[0] += 1;
+            bucket[bucket[0]] = i;
+            buckets.put(value, bucket);
+        }
+        return buckets;
+    }
+
+    private void hashJoinBuildRight() {
+        HashMap<String, int[]> buckets = buildBuckets(right.getNumberOfRows(), this::rightKey);
+        for (int i = 0; i < left.getNumberOfRows(); i++) {
+            int[] bucket = buckets.get(leftKey(i));
+            if (bucket == null) continue;
+            for (int k = 1; k <= bucket[0]; k++) {
+                addPair(i, bucket[k]);
+            }
+        }
+    }
+
+    private void hashJoinBuildLeft() {
+        HashMap<String, int[]> buckets = buildBuckets(left.getNumberOfRows(), this::leftKey);
+        for (int j = 0; j < right.getNumberOfRows(); j++) {
+            int[] bucket = buckets.get(rightKey(j));
+            if (bucket == null) continue;
+            for (int k = 1; k <= bucket[0]; k++) {
+                addPair(bucket[k], j);
+            }
+        }
+        orderPairsByLeft();
+    }
+
+    private Integer[] sortedPositions(int rows, IntFunction<String> key, boolean sorted) {
+        Integer[] positions = new Integer[rows];
+        for (int i = 0; i < rows; i++) positions[i] = i;
+        // Arrays.sort on objects is stable, so equal keys keep their row order.
+        if (!sorted) Arrays.sort(positions, Comparator.comparing(key::apply));
+        return positions;
+    }
+
+    private void sortMergeJoin() {
+        boolean leftSorted = isSorted(left, leftIndex);
+        Integer[] leftOrder = sortedPositions(left.getNumberOfRows(), this::leftKey, leftSorted);
+        Integer[] rightOrder = sortedPositions(right.getNumberOfRows(), this::rightKey, isSorted(right, rightIndex));
+        int i = 0;
+        int j = 0;
+        while (i < leftOrder.length && j < rightOrder.length) {
+            String leftValue = leftKey(leftOrder[i]);
+            int compare = leftValue.compareTo(rightKey(rightOrder[j]));
+            if (compare < 0) {
+                i += 1;
+            } else if (compare > 0) {
+                j += 1;
+            } else {
+                int groupEnd = j;
+                while (groupEnd < rightOrder.length && rightKey(rightOrder[groupEnd]).equals(leftValue)) groupEnd += 1;
+                while (i < leftOrder.length && leftKey(leftOrder[i]).equals(leftValue)) {
+                    for (int k = j; k < groupEnd; k++) {
+                        addPair(leftOrder[i], rightOrder[k]);
+                    }
+                    i += 1;
+                }
+                j = groupEnd;
+            }
+        }
+        if (!leftSorted) orderPairsByLeft();
+    }
+
+    // Stable counting sort of the pairs by left row, keeping the right rows ascending within each.
+    private void orderPairsByLeft() {
+        int[] starts = new int[left.getNumberOfRows() + 1];
+        for (int p = 0; p < pairCount; p++) starts[pairLeft[p] + 1] += 1;
+        for (int i = 1; i < starts.length; i++) starts[i] += starts[i - 1];
+        int[] sortedLeft = new int[pairCount];
+        int[] sortedRight = new int[pairCount];
+        for (int p = 0; p < pairCount; p++) {
+            int slot = starts[pairLeft[p]]++;
+            sortedLeft[slot] = pairLeft[p];
+            sortedRight[slot] = pairRight[p];
+        }
+        pairLeft = sortedLeft;
+        pairRight = sortedRight;
+    }
+
+    private void emitRows(Table target) {
+        int leftWidth = left.getNumberOfFields();
+        int rightWidth = right.getNumberOfFields();
+        for (int p = 0; p < pairCount; p++) {
+            ArrayList<String> leftValues = left.getRows().get(pairLeft[p]).getValues();
+            ArrayList<String> rightValues = right.getRows().get(pairRight[p]).getValues();
+            ArrayList<String> values = new ArrayList<>(leftWidth + rightWidth - 1);
+            values.add(Integer.toString(p + 1));
+            for (int c = 1; c < leftWidth; c++) {
+                if (c != leftIndex) values.add(leftValues.get(c));
+            }
+            for (int c = 1; c < rightWidth; c++) {
+                if (c != rightIndex) values.add(rightValues.get(c));
+            }
+            target.addRow(new Row(values));
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package edu.uob;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 
+/**
+ * Splits a command into tokens in a single pass over the characters.
+ *
+ * <p>Text between single quotes becomes one literal token, quotes included. Outside quotes,
+ * spaces separate tokens, ( ) , ; are tokens of their own, and == != &lt;= &gt;= are taken as
+ * operators before any lone = &lt; or &gt;, which are tokens on their own too. A run of = pairs up
+ * from the left, so === is == then =.
+ */
 public class Tokenizer {
 
-    private final String[] supersetCharacters = {"==", "!=", "<=", ">="};
-    private final String[] subsetCharacters = {"=", ">", "<"};
-    private final String[] specialCharacters = {"(", ")", ",", ";", "==", "!=", "<=", ">="};
     private ArrayList<String> tokens = new ArrayList<String>();
 
     public Tokenizer() {
@@ -19,67 +23,93 @@ public class Tokenizer {
     {
         // Remove any whitespace at the beginning and end of the query
         query = query.trim();
-        // Split the query on single quotes (to separate out query characters from string literals)
-        String[] fragments = query.split("'");
-        for (int i=0; i<fragments.length; i++) {
-            // Every odd fragment is a string literal, so just append it without any alterations
-            if (i%2 != 0) tokens.add("'" + fragments[i] + "'");
-                // If it's not a string literal, it must be query characters (which need further processing)
-            else {
-                // Tokenise the fragments into an array of strings
-                ArrayList<String> tokenBatch = padSpecialChars(fragments[i]);
-
-                tokenBatch = padSubsetChars(tokenBatch);
-
-                // Then add these to the "result" array list (needs a bit of conversion)
-                tokens.addAll(tokenBatch);
-
-                //padSubsetChars(tokens);
-            }
+        if (query.length() == 0) {
+            tokens.add("");
+            return tokens;
+        }
+        // Quotes at the very end open no further fragment.
+        int end = query.length();
+        while (end > 0 && query.charAt(end - 1) == '\'') end--;
+        int start = 0;
+        boolean literal = false;
+        while (start < end) {
+            int quote = query.indexOf('\'', start);
+            if (quote < 0 || quote > end) quote = end;
+            if (literal) tokens.add(literalToken(query, start, quote));
+            else scanFragment(query, start, quote);
+            literal = !literal;
+            start = quote + 1;
         }
         return tokens;
     }
 
-    private ArrayList<String> padSubsetChars(ArrayList<String> tokens) {
-        for (int t = 0; t < tokens.size(); t++) {
-            boolean pad = true;
-            for (String superset : supersetCharacters) {
-                if (tokens.get(t).equals(superset)) {
-                    pad = false;
-                }
-            }
-            if (pad) {
-                for (int i = 0; i < subsetCharacters.length; i++) {
-                    tokens.set(t, tokens.get(t).replace(subsetCharacters[i], " " + subsetCharacters[i] + " "));
-                }
+    // An unterminated literal still gets its closing quote.
+    private String literalToken(String query, int start, int end) {
+        if (end < query.length()) return query.substring(start - 1, end + 1);
+        return "'" + query.substring(start, end) + "'";
+    }
+
+    // Tokenises query characters between from and to, which hold no quotes.
+    private void scanFragment(String query, int from, int to) {
+        while (from < to && query.charAt(from) <= ' ') from++;
+        while (to > from && query.charAt(to - 1) <= ' ') to--;
+        if (from == to) {
+            tokens.add("");
+            return;
+        }
+        int wordStart = -1;
+        int i = from;
+        while (i < to) {
+            char c = query.charAt(i);
+            if (c == ' ' || c == '(' || c == ')' || c == ',' || c == ';') {
+                wordStart = addWord(query, wordStart, i);
+                if (c != ' ') tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '=' && i + 1 < to && query.charAt(i + 1) == '=') {
+                wordStart = addWord(query, wordStart, i);
+                int run = 0;
+                while (i + run < to && query.charAt(i + run) == '=') run++;
+                for (int pair = 0; pair < run / 2; pair++) tokens.add("==");
+                i += run - (run % 2);
+                // An odd = left over belongs with whatever follows it.
+                if (run % 2 == 1) wordStart = i++;
+            } else if ((c == '!' || c == '<' || c == '>') && i + 1 < to && query.charAt(i + 1) == '='
+                    && (i + 2 == to || query.charAt(i + 2) != '=')) {
+                wordStart = addWord(query, wordStart, i);
+                tokens.add(query.substring(i, i + 2));
+                i += 2;
+            } else {
+                if (wordStart < 0) wordStart = i;
+                i++;
             }
-            while (tokens.get(t).contains("  ")) tokens.set(t, tokens.get(t).replaceAll("  ", " "));
-            tokens.set(t, tokens.get(t).trim());
-            String[] batch = tokens.get(t).split(" ");
-            tokens.remove(t);
-            tokens.addAll(t, Arrays.asList(batch));
         }
-        return tokens;
+        addWord(query, wordStart, to);
     }
 
-    private ArrayList<String> padSpecialChars(String input)
-    {
-        // Add in some extra padding spaces around the "special characters"
-        // so we can be sure that they are separated by AT LEAST one space (possibly more)
-        for(int i=0; i<specialCharacters.length ;i++) {
-            input = input.replace(specialCharacters[i], " " + specialCharacters[i] + " ");
+    // Adds the word between start and end, split around any lone = < or >; returns -1 for the next word.
+    // Pieces lose surrounding control characters, except that the first piece of a split word keeps its
+    // trailing ones, and a first or last piece made only of them disappears instead of becoming "".
+    private int addWord(String query, int start, int end) {
+        if (start < 0) return -1;
+        int piece = start;
+        boolean split = false;
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '=' || c == '<' || c == '>') {
+                if (!split) {
+                    int from = piece;
+                    while (from < i && query.charAt(from) <= ' ') from++;
+                    if (from < i) tokens.add(query.substring(from, i));
+                } else if (piece < i) {
+                    tokens.add(query.substring(piece, i).trim());
+                }
+                tokens.add(String.valueOf(c));
+                piece = i + 1;
+                split = true;
+            }
         }
-        // Remove all double spaces (the previous replacements may had added some)
-        // This is "blind" replacement - replacing if they exist, doing nothing if they don't
-        while (input.contains("  ")) input = input.replaceAll("  ", " ");
-        // Again, remove any whitespace from the beginning and end that might have been introduced
-        input = input.trim();
-        // Finally split on the space char (since there will now ALWAYS be a space between tokens)
-        String[] batch = input.split(" ");
-
-        ArrayList<String> tokenBatch = new ArrayList<>();
-        tokenBatch.addAll(Arrays.asList(batch));
-
-        return tokenBatch;
+        String rest = query.substring(piece, end).trim();
+        if (!split || rest.length() > 0) tokens.add(rest);
+        return -1;
     }
 }
@@ -0,0 +1,120 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * The parsed form of one column: every cell that Double.parseDouble accepts is stored as a
+ * primitive double, alongside bitmaps of which cells are numeric, which are plain decimal
+ * literals and which are the TRUE/FALSE/NULL keywords. Built once per table version so that
+ * comparisons never parse strings or throw.
+ */
+public class TypedColumn {
+    private final double[] numbers;
+    private final BitSet numeric;
+    private final BitSet plainNumbers;
+    private final BitSet keywords;
+
+    public TypedColumn(ArrayList<Row> rows, int column) {
+        this(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            set(i, rows.get(i).getValue(column));
+        }
+    }
+
+    // An empty column of size cells, for a reader that already knows their types to fill in.
+    TypedColumn(int size) {
+        numbers = new double[size];
+        numeric = new BitSet(size);
+        plainNumbers = new BitSet(size);
+        keywords = new BitSet(size);
+    }
+
+    void set(int row, String value) {
+        if (isKeyword(value)) {
+            keywords.set(row);
+        } else if (isPlainNumber(value)) {
+            setNumber(row, Double.parseDouble(value), true);
+        } else if (mightBeDouble(value)) {
+            try {
+                setNumber(row, Double.parseDouble(value), false);
+            } catch (NumberFormatException e) {
+                // Not numeric after all.
+            }
+        }
+    }
+
+    void setNumber(int row, double value, boolean plain) {
+        numbers[row] = value;
+        numeric.set(row);
+        if (plain) plainNumbers.set(row);
+    }
+
+    void setKeyword(int row) {
+        keywords.set(row);
+    }
+
+    // Gives row the parsed form of the cell at another column's row, for cells known to hold the same text.
+    void copy(int row, TypedColumn from, int fromRow) {
+        numbers[row] = from.numbers[fromRow];
+        if (from.numeric.get(fromRow)) numeric.set(row);
+        if (from.plainNumbers.get(fromRow)) plainNumbers.set(row);
+        if (from.keywords.get(fromRow)) keywords.set(row);
+    }
+
+    public static boolean isKeyword(String value) {
+        return (value.equals("TRUE") || value.equals("FALSE") || value.equals("NULL"));
+    }
+
+    // Same language as the regex ^[+-]?[0-9]*\.?[0-9]+$, without the regex.
+    public static boolean isPlainNumber(String value) {
+        int i = 0;
+        int length = value.length();
+        if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) i++;
+        int dot = -1;
+        for (int j = i; j < length; j++) {
+            char c = value.charAt(j);
+            if (c == '.' && dot < 0) {
+                dot = j;
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (dot >= 0) return dot < length - 1;
+        return i < length;
+    }
+
+    // Anything Double.parseDouble accepts starts, after trimming, with one of these characters.
+    private static boolean mightBeDouble(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() == 0) return false;
+        return "+-.0123456789NI".indexOf(trimmed.charAt(0)) >= 0;
+    }
+
+    public static boolean isDouble(String value) {
+        if (isPlainNumber(value)) return true;
+        if (!mightBeDouble(value)) return false;
+        try {
+            Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isNumeric(int row) {
+        return numeric.get(row);
+    }
+
+    public double getNumber(int row) {
+        return numbers[row];
+    }
+
+    public boolean isPlainNumber(int row) {
+        return plainNumbers.get(row);
+    }
+
+    public boolean isKeyword(int row) {
+        return keywords.get(row);
+    }
+}
@@ -0,0 +1,264 @@
+package edu.uob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the write-ahead log of every database a server has written to. Appends are made durable
+ * in batches by a background flusher, which every write waits for before it replies, logs that grow past a threshold are checkpointed in the
+ * background (dirty tables written back, then the log truncated), and recover() replays whatever
+ * a previous run left behind.
+ */
+public class WalManager {
+    private final TableCache tableCache;
+    private final HashMap<String, WriteAheadLog> logs = new HashMap<>();
+    private final HashSet<String> pendingCheckpoints = new HashSet<>();
+    private final long checkpointBytes = Long.getLong("db.wal.checkpointBytes", 4L * 1024 * 1024);
+    private final long syncMillis = Long.getLong("db.wal.syncMillis", 5);
+    private final int syncBatch = Integer.getInteger("db.wal.syncBatch", 256);
+    private Thread flusher;
+    private ExecutorService checkpointer;
+    private boolean syncRequested = false;
+    // How many times the flusher has synced every log, so that waiters can tell when a sync has failed.
+    private long syncRounds = 0;
+    private boolean closed = false;
+
+    public WalManager(TableCache sharedCache) {
+        tableCache = sharedCache;
+    }
+
+    private synchronized WriteAheadLog log(String databasePath) {
+        return logs.computeIfAbsent(databasePath, WriteAheadLog::new);
+    }
+
+    // Returns the number of bytes added to the log, or -1 if the records could not be written.
+    public long append(String databasePath, ArrayList<WriteAheadLog.Record> records) {
+        WriteAheadLog log = log(databasePath);
+        long written;
+        try {
+            written = log.append(records);
+            if (log.getUnsyncedRecords() >= syncBatch) {
+                log.sync();
+            } else {
+                requestSync();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write to the write-ahead log.");
+            return -1;
+        }
+        if (log.size() > checkpointBytes) {
+            scheduleCheckpoint(databasePath);
+        }
+        return written;
+    }
+
+    /**
+     * Writes back every dirty table of the database, after which the log records appended before
+     * it started are no longer needed. Appends and commits carry on while the tables are written,
+     * and only the log up to where it stood at the start is truncated, once every table is durably
+     * on disk; if any could not be written, it is kept so that recovery can still replay it. Returns
+     * false if the tables could not be written.
+     */
+    public boolean checkpoint(String databasePath) {
+        WriteAheadLog log = log(databasePath);
+        // Every record before this position was appended after its table was put in the cache.
+        long position = log.position();
+        if (!tableCache.flushDatabase(databasePath)) {
+            System.out.println("Could not write back the tables, so the write-ahead log is kept.");
+            return false;
+        }
+        try {
+            log.truncate(position);
+        } catch (IOException e) {
+            System.out.println("Could not truncate the write-ahead log.");
+        }
+        return true;
+    }
+
+    /** Drops the log of a database that is about to be deleted, without checkpointing it. */
+    public void forget(String databasePath) {
+        WriteAheadLog log;
+        synchronized (this) {
+            log = logs.remove(databasePath);
+        }
+        if (log != null) log.close();
+    }
+
+    private synchronized void requestSync() {
+        if (closed) return;
+        syncRequested = true;
+        if (flusher == null) {
+            flusher = new Thread(this::flushLoop, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        notifyAll();
+    }
+
+    // Waits for work, then lets a short window of appends pile up so that one fsync covers them all.
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                while (!syncRequested && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                syncRequested = false;
+            }
+            try {
+                Thread.sleep(syncMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            syncAll();
+            synchronized (this) {
+                syncRounds += 1;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every record appended to the database's log so far is on disk. Commits waiting at
+     * the same moment are all covered by the flusher's next fsync of the log, instead of one each.
+     * Returns false if the flusher's fsync failed, so the records may not be durable.
+     */
+    public boolean awaitSync(String databasePath) {
+        WriteAheadLog log = log(databasePath);
+        long target = log.getAppendedRecords();
+        synchronized (this) {
+            // The round after the one under way (if any) starts after this request, so it covers the target.
+            long lastRound = syncRounds + 2;
+            requestSync();
+            while (!closed && log.getSyncedRecords() < target && syncRounds < lastRound) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            // The log's counts are volatile, so this never waits on a log a checkpoint is writing.
+            // A failed fsync leaves the synced count where it was, and the rounds run out.
+            if (!closed) return log.getSyncedRecords() >= target;
+        }
+        try {
+            log.sync();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not sync the write-ahead log.");
+            return false;
+        }
+    }
+
+    private void syncAll() {
+        ArrayList<WriteAheadLog> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(logs.values());
+        }
+        for (WriteAheadLog log : snapshot) {
+            try {
+                log.sync();
+            } catch (IOException e) {
+                System.out.println("Could not sync the write-ahead log.");
+            }
+        }
+    }
+
+    private synchronized void scheduleCheckpoint(String databasePath) {
+        if (closed || !pendingCheckpoints.add(databasePath)) return;
+        if (checkpointer == null) {
+            checkpointer = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "wal-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        checkpointer.execute(() -> {
+            synchronized (this) {
+                pendingCheckpoints.remove(databasePath);
+            }
+            checkpoint(databasePath);
+        });
+    }
+
+    /** Replays the log of every database under rootPath into its base files. */
+    public void recover(String rootPath) {
+        File[] databases = new File(rootPath).listFiles(File::isDirectory);
+        if (databases == null) return;
+        for (File database : databases) {
+            if (new File(database, WriteAheadLog.FILE_NAME).length() > 0) {
+                replay(database.getPath());
+            }
+        }
+    }
+
+    private void replay(String databasePath) {
+        ArrayList<WriteAheadLog.Record> records;
+        try {
+            records = log(databasePath).readAll();
+        } catch (IOException e) {
+            System.out.println("Could not read the write-ahead log.");
+            return;
+        }
+        FileReading fileReading = new FileReading(databasePath, tableCache, this);
+        HashMap<String, Table> tables = new HashMap<>();
+        HashMap<String, Integer> counters = new HashMap<>();
+        for (WriteAheadLog.Record record : records) {
+            String name = record.getTable();
+            if (!tables.containsKey(name)) {
+                tables.put(name, fileReading.doesTableExist(name) ? fileReading.readFileToTable(name) : null);
+                counters.put(name, parseId(fileReading.readConfig(name)));
+            }
+            Table table = tables.get(name);
+            if (table == null) continue;
+            if (record.getType() == WriteAheadLog.Type.DELETE) {
+                table.removeRowsById(record.getValues());
+            } else if (record.getValues().size() == table.getNumberOfFields()) {
+                table.upsertRow(record.getValues());
+                if (record.getType() == WriteAheadLog.Type.INSERT) {
+                    counters.put(name, Math.max(counters.get(name), parseId(record.getId())));
+                }
+            }
+        }
+        for (String name : tables.keySet()) {
+            if (tables.get(name) == null) continue;
+            tableCache.put(TableCache.key(databasePath, name), tables.get(name), true);
+            fileReading.writeConfigToFile(name, Integer.toString(counters.get(name)));
+        }
+        checkpoint(databasePath);
+    }
+
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Checkpoints every log and stops the background threads. */
+    public void close() {
+        ArrayList<String> databases;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            if (checkpointer != null) checkpointer.shutdown();
+            databases = new ArrayList<>(logs.keySet());
+        }
+        for (String databasePath : databases) {
+            checkpoint(databasePath);
+            log(databasePath).close();
+        }
+        tableCache.flushAll();
+    }
+}
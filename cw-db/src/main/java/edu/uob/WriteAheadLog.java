@@ -0,0 +1,220 @@
+package edu.uob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of row changes for one database folder. Each record is framed as
+ * {@code int length, int crc32, body} so that a torn write at the tail is detected and ignored
+ * during recovery. Records are by id, which makes replaying them over a newer base file harmless.
+ */
+public class WriteAheadLog {
+    public static final String FILE_NAME = "changes.wal";
+
+    public enum Type { INSERT, UPDATE, DELETE }
+
+    /** One row change. INSERT and UPDATE carry the whole row, DELETE carries only the id. */
+    public static class Record {
+        private final Type type;
+        private final String table;
+        private final ArrayList<String> values;
+
+        public Record(Type type, String table, ArrayList<String> values) {
+            this.type = type;
+            this.table = table;
+            this.values = values;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public ArrayList<String> getValues() {
+            return values;
+        }
+
+        public String getId() {
+            return values.get(0);
+        }
+    }
+
+    private final File file;
+    private FileChannel channel;
+    private int unsyncedRecords = 0;
+    // Counts of every record ever appended, and of those known to be on disk. They are volatile so
+    // that commits waiting on the WalManager can read them without taking the log's lock.
+    private volatile long appendedRecords = 0;
+    private volatile long syncedRecords = 0;
+    // Bytes cut from the front of the log by checkpoints, so that positions stay valid across them.
+    private long truncatedBytes = 0;
+
+    public WriteAheadLog(String databasePath) {
+        file = new File(databasePath, FILE_NAME);
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(record.getType().ordinal());
+        writeString(out, record.getTable());
+        out.writeInt(record.getValues().size());
+        for (String value : record.getValues()) {
+            writeString(out, value);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Writes the records with a single write call and returns how many bytes that was; they are
+     * durable once sync() has run.
+     */
+    public synchronized int append(ArrayList<Record> records) throws IOException {
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(framed);
+        for (Record record : records) {
+            byte[] body = encode(record);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            out.writeInt(body.length);
+            out.writeInt((int) crc.getValue());
+            out.write(body);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(framed.toByteArray());
+        FileChannel target = channel();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        unsyncedRecords += records.size();
+        appendedRecords += records.size();
+        return buffer.capacity();
+    }
+
+    public synchronized int getUnsyncedRecords() {
+        return unsyncedRecords;
+    }
+
+    public long getAppendedRecords() {
+        return appendedRecords;
+    }
+
+    public long getSyncedRecords() {
+        return syncedRecords;
+    }
+
+    public synchronized void sync() throws IOException {
+        if (unsyncedRecords > 0 && channel != null) {
+            channel.force(false);
+        }
+        unsyncedRecords = 0;
+        syncedRecords = appendedRecords;
+    }
+
+    public synchronized long size() {
+        return file.length();
+    }
+
+    /** The position just past the last record appended so far; it stays valid across truncate(). */
+    public synchronized long position() {
+        return truncatedBytes + file.length();
+    }
+
+    /**
+     * Removes the records before position, keeping any appended since, and syncs what is kept. Those
+     * are copied to a temporary file that is renamed over the log, so a crash leaves one log or the
+     * other whole. A position already removed by an earlier call is ignored.
+     */
+    public synchronized void truncate(long position) throws IOException {
+        long length = file.length();
+        long cut = Math.min(position - truncatedBytes, length);
+        if (cut <= 0) return;
+        if (cut == length) {
+            channel().truncate(0);
+            channel.force(false);
+        } else {
+            File temporary = new File(file.getPath() + FileReading.TEMPORARY_EXTENSION);
+            try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long copied = 0;
+                while (copied < length - cut) {
+                    copied += source.transferTo(cut + copied, length - cut - copied, target);
+                }
+            }
+            close();
+            FileReading.replace(temporary, file);
+            FileReading.syncFolder(file.getParentFile());
+        }
+        truncatedBytes += cut;
+        unsyncedRecords = 0;
+        syncedRecords = appendedRecords;
+    }
+
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the write-ahead log.");
+        }
+        channel = null;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Reads every complete record, stopping at the first torn or corrupt one. */
+    public synchronized ArrayList<Record> readAll() throws IOException {
+        ArrayList<Record> records = new ArrayList<>();
+        if (!file.exists()) return records;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) break;
+            byte[] body = new byte[length];
+            buffer.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != expected) break;
+            ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+            Type type = Type.values()[bodyBuffer.get()];
+            String table = readString(bodyBuffer);
+            int count = bodyBuffer.getInt();
+            ArrayList<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readString(bodyBuffer));
+            }
+            records.add(new Record(type, table, values));
+        }
+        return records;
+    }
+}
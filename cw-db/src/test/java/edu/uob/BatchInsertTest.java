@@ -0,0 +1,86 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchInsertTest {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        sendCommandToServer("CREATE DATABASE batchDB;");
+        sendCommandToServer("USE batchDB;");
+        sendCommandToServer("CREATE TABLE marks (name, mark, pass);");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sendCommandToServer("DROP DATABASE batchDB;");
+    }
+
+    private String sendCommandToServer(String command) {
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    @Test
+    public void testMultiRowInsert() {
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65, TRUE), ('Dave', 55, true), ('Bob', 35, FALSE);"));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Clive', 20, FALSE);"));
+        assertEquals("[OK]\nid\tname\tmark\tpass\n1\tSteve\t65\tTRUE\n2\tDave\t55\tTRUE\n3\tBob\t35\tFALSE\n4\tClive\t20\tFALSE\n",
+                sendCommandToServer("SELECT * FROM marks;"));
+        assertEquals("[ERROR] The table \"marks\" must take 3 values exactly.",
+                sendCommandToServer("INSERT INTO marks VALUES ('Ann', 70, TRUE), ('Tom', 40);"));
+        assertTrue(sendCommandToServer("INSERT INTO marks VALUES ('Ann', 70, TRUE),;").startsWith("[ERROR]"));
+        assertFalse(sendCommandToServer("SELECT * FROM marks;").contains("Ann"));
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        File folder = FileReading.getImportPath().toFile();
+        folder.mkdirs();
+        File file = new File(folder, "marks.tsv");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("name\tmark\tpass\nSteve\t65\ttrue\nDave\t\tTRUE\n");
+        }
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Bob', 35, FALSE);"));
+        assertEquals("[OK]", sendCommandToServer("LOAD marks FROM 'marks.tsv';"));
+        assertEquals("[OK]\nid\tname\tmark\tpass\n1\tBob\t35\tFALSE\n2\tSteve\t65\tTRUE\n3\tDave\tNULL\tTRUE\n",
+                sendCommandToServer("SELECT * FROM marks;"));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Clive', 20, FALSE);"));
+        assertTrue(sendCommandToServer("SELECT * FROM marks;").contains("4\tClive"));
+
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("name\tmark\tpass\nAnn\t70\n");
+        }
+        assertTrue(sendCommandToServer("LOAD marks FROM 'marks.tsv';").startsWith("[ERROR] Line 2"));
+        assertFalse(sendCommandToServer("SELECT * FROM marks;").contains("Ann"));
+        file.delete();
+    }
+
+    // Clients can only load files from the import folder, not anything else the server can read.
+    @Test
+    public void testLoadStaysInImportFolder() throws Exception {
+        File outside = Files.createTempFile("marks", ".tsv").toFile();
+        try (FileWriter writer = new FileWriter(outside)) {
+            writer.write("name\tmark\tpass\nSteve\t65\tTRUE\n");
+        }
+        String[] paths = {outside.getAbsolutePath(), "../" + outside.getName(), "sub/../../marks.tsv", "/etc/passwd"};
+        for (String path : paths) {
+            assertEquals("[ERROR] The file \"" + path + "\" must be a relative path inside the import folder.",
+                    sendCommandToServer("LOAD marks FROM '" + path + "';"));
+        }
+        assertEquals("[ERROR] Could not read the file \"missing.tsv\".", sendCommandToServer("LOAD marks FROM 'missing.tsv';"));
+        assertEquals("[OK]\nid\tname\tmark\tpass\n", sendCommandToServer("SELECT * FROM marks;"));
+        outside.delete();
+    }
+}
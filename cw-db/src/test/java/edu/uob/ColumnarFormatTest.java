@@ -0,0 +1,104 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarFormatTest {
+
+    private void addRow(Table table, String... values) {
+        table.addRows(new ArrayList<>(Arrays.asList(values)));
+    }
+
+    @Test
+    public void testRoundTripKeepsEveryCellsText() throws Exception {
+        Table table = new Table("mixed");
+        table.addFields(new ArrayList<>(Arrays.asList("whole", "decimal", "flag", "text", "awkward")), true);
+        addRow(table, "1", "1.5", "TRUE", "Steve", "007");
+        addRow(table, "-20", "NULL", "FALSE", "café au lait", "1.50");
+        addRow(table, "NULL", "-0.25", "NULL", "NULL", "5");
+        addRow(table, "9000000000", "100.0", "TRUE", "", "-0");
+
+        File file = Files.createTempFile("mixed", ColumnarFormat.EXTENSION).toFile();
+        ColumnarFormat.write(file, table);
+        Table loaded = ColumnarFormat.read(file, "mixed");
+
+        assertEquals(table.getFields(), loaded.getFields());
+        assertEquals(table.getNumberOfRows(), loaded.getNumberOfRows());
+        for (int i = 0; i < table.getNumberOfRows(); i++) {
+            assertEquals(table.getRows().get(i).getValues(), loaded.getRows().get(i).getValues());
+        }
+        // The parsed columns read straight from the typed blocks agree with parsing the text.
+        for (int c = 0; c < table.getNumberOfFields(); c++) {
+            TypedColumn expected = new TypedColumn(table.getRows(), c);
+            TypedColumn actual = loaded.getTypedColumn(c);
+            for (int r = 0; r < table.getNumberOfRows(); r++) {
+                assertEquals(expected.isNumeric(r), actual.isNumeric(r));
+                assertEquals(expected.getNumber(r), actual.getNumber(r));
+                assertEquals(expected.isPlainNumber(r), actual.isPlainNumber(r));
+                assertEquals(expected.isKeyword(r), actual.isKeyword(r));
+            }
+        }
+        assertTrue(file.delete());
+    }
+
+    // A damaged file is reported as an IOException, which the server turns into an error, not a crash.
+    @Test
+    public void testDamagedFilesThrowIOException() throws Exception {
+        Table table = new Table("mixed");
+        table.addFields(new ArrayList<>(Arrays.asList("whole", "text")), true);
+        addRow(table, "1", "65", "Steve");
+        addRow(table, "2", "55", "Dave");
+        File file = Files.createTempFile("mixed", ColumnarFormat.EXTENSION).toFile();
+        ColumnarFormat.write(file, table);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int length : new int[] {0, 10, 20, bytes.length / 2, bytes.length - 1}) {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> ColumnarFormat.read(file, "mixed"), "length " + length);
+        }
+        // The row count, then the last row's dictionary code, made far too large.
+        byte[] damaged = bytes.clone();
+        damaged[12] = 0x7F;
+        Files.write(file.toPath(), damaged);
+        assertThrows(IOException.class, () -> ColumnarFormat.read(file, "mixed"));
+        damaged = bytes.clone();
+        damaged[damaged.length - 4] = 0x7F;
+        Files.write(file.toPath(), damaged);
+        assertThrows(IOException.class, () -> ColumnarFormat.read(file, "mixed"));
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testServerStoresColumnarTables() {
+        System.setProperty(FileReading.FORMAT_PROPERTY, "columnar");
+        try {
+            DBServer server = new DBServer();
+            assertEquals("[OK]", server.handleCommand("CREATE DATABASE columnarDB;"));
+            assertEquals("[OK]", server.handleCommand("USE columnarDB;"));
+            assertEquals("[OK]", server.handleCommand("CREATE TABLE marks (name, mark, pass);"));
+            assertEquals("[OK]", server.handleCommand("INSERT INTO marks VALUES ('Steve', 65, TRUE);"));
+            assertEquals("[OK]", server.handleCommand("INSERT INTO marks VALUES ('Dave', 55.5, FALSE);"));
+            server.close();
+
+            String folder = Paths.get("databases", "columnardb").toAbsolutePath().toString();
+            assertTrue(new File(folder, "marks" + ColumnarFormat.EXTENSION).exists());
+            assertFalse(new File(folder, "marks.tab").exists());
+
+            server = new DBServer();
+            assertEquals("[OK]", server.handleCommand("USE columnarDB;"));
+            String response = server.handleCommand("SELECT * FROM marks WHERE mark > 60;");
+            assertTrue(response.contains("1\tSteve\t65\tTRUE\n"));
+            assertEquals(3, response.split("\n").length);
+            assertEquals("[OK]", server.handleCommand("DROP DATABASE columnarDB;"));
+        } finally {
+            System.clearProperty(FileReading.FORMAT_PROPERTY);
+        }
+    }
+}
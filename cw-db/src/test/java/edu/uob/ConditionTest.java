@@ -0,0 +1,110 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionTest {
+
+    private Table makeTable() {
+        Table table = new Table("marks");
+        table.addFields(new ArrayList<>(Arrays.asList("name", "mark", "pass")), true);
+        table.addRows(new ArrayList<>(Arrays.asList("Steve", "65", "TRUE")));
+        table.addRows(new ArrayList<>(Arrays.asList("Dave", "55", "TRUE")));
+        table.addRows(new ArrayList<>(Arrays.asList("Bob", "35", "FALSE")));
+        table.addRows(new ArrayList<>(Arrays.asList("Clive", "20", "FALSE")));
+        return table;
+    }
+
+    private String names(Table table) {
+        StringBuilder names = new StringBuilder();
+        for (Row row : table.getRows()) {
+            names.append(row.getValue(1)).append(" ");
+        }
+        return names.toString().trim();
+    }
+
+    @Test
+    public void testOrKeepsLeftRowsFirst() {
+        Table table = makeTable();
+        Condition condition = Condition.or(new Comparison(2, "<", "30"), new Comparison(3, "==", "TRUE"));
+        Condition.filter(table, condition);
+        assertEquals("Clive Steve Dave", names(table));
+    }
+
+    @Test
+    public void testAndOnlyTestsRightSideOnSurvivors() {
+        Table table = makeTable();
+        int[] tested = new int[1];
+        Condition counting = t -> i -> {
+            tested[0]++;
+            return true;
+        };
+        Condition condition = Condition.and(new Comparison(2, ">", "50"), counting);
+        Condition.filter(table, condition);
+        assertEquals("Steve Dave", names(table));
+        assertEquals(2, tested[0]);
+    }
+
+    @Test
+    public void testNestedOrderIsKeptAcrossRuns() {
+        Table table = makeTable();
+        // (mark < 40 OR name == 'Dave') OR (pass == TRUE AND mark > 60): Clive, Bob, Dave, then Steve.
+        Condition left = Condition.or(new Comparison(2, "<", "40"), new Comparison(1, "==", "'Dave'"));
+        Condition right = Condition.and(new Comparison(3, "==", "TRUE"), new Comparison(2, ">", "60"));
+        assertArrayEquals(new int[] {2, 3, 1, 0}, Condition.or(left, right).select(table));
+        // AND keeps the left side's runs, so Steve still comes last.
+        Condition condition = Condition.and(Condition.or(left, right), new Comparison(1, "!=", "'Bob'"));
+        Condition.filter(table, condition);
+        assertEquals("Clive Dave Steve", names(table));
+    }
+
+    @Test
+    public void testWideClausesCombineBitmaps() {
+        Table table = new Table("marks");
+        table.addFields(new ArrayList<>(Arrays.asList("name", "mark", "pass")), true);
+        int size = 200000;
+        for (int i = 0; i < size; i++) {
+            table.addRows(new ArrayList<>(Arrays.asList(Integer.toString(i + 1), "s" + i, Integer.toString(i % 100), i % 2 == 0 ? "TRUE" : "FALSE")));
+        }
+        // ((mark < 10 OR mark >= 90) AND pass == TRUE) OR (mark == 50 AND name LIKE '7')
+        Condition ends = Condition.or(new Comparison(2, "<", "10"), new Comparison(2, ">=", "90"));
+        Condition passing = Condition.and(ends, new Comparison(3, "==", "TRUE"));
+        Condition fifty = Condition.and(new Comparison(2, "==", "50"), new Comparison(1, "LIKE", "'7'"));
+        int[] positions = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> Condition.or(passing, fifty).select(table));
+        int expected = 0;
+        for (int i = 0; i < size; i++) {
+            int mark = i % 100;
+            if (((mark < 10 || mark >= 90) && i % 2 == 0) || (mark == 50 && Integer.toString(i).contains("7"))) expected++;
+        }
+        assertEquals(expected, positions.length);
+        // A tenth of the rows match the left side, in row order; the rows only the right side matches come after them.
+        assertEquals(0, positions[0]);
+        assertEquals(size - 2, positions[size / 10 - 1]);
+        assertEquals("50", table.getRows().get(positions[size / 10]).getValue(2));
+    }
+
+    @Test
+    public void testNestedConditionsThroughServer() {
+        DBServer server = new DBServer();
+        String db = "conditions" + System.currentTimeMillis();
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> {
+            server.handleCommand("CREATE DATABASE " + db + ";");
+            server.handleCommand("USE " + db + ";");
+            server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+            server.handleCommand("INSERT INTO marks VALUES ('Steve', 65, TRUE);");
+            server.handleCommand("INSERT INTO marks VALUES ('Dave', 55, TRUE);");
+            server.handleCommand("INSERT INTO marks VALUES ('Bob', 35, FALSE);");
+            server.handleCommand("INSERT INTO marks VALUES ('Clive', 20, FALSE);");
+            String response = server.handleCommand("SELECT name FROM marks WHERE (pass == FALSE) AND ((mark > 30) OR (name == 'Clive'));");
+            assertEquals("[OK]\nname\nBob\nClive\n", response);
+            response = server.handleCommand("SELECT name FROM marks WHERE (name LIKE 'e') OR (mark < 40);");
+            assertEquals("[OK]\nname\nSteve\nDave\nClive\nBob\n", response);
+            server.handleCommand("DROP DATABASE " + db + ";");
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DBClientTest {
+    private DBServer server;
+    private SelectorServer selectorServer;
+    private Thread serverThread;
+    private int port;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new DBServer();
+        selectorServer = new SelectorServer(server, 2);
+        port = selectorServer.bind(0);
+        serverThread = new Thread(() -> {
+            try {
+                selectorServer.serve();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        serverThread.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        server.handleCommand("DROP DATABASE clientDB;");
+        selectorServer.stop();
+        serverThread.join(1000);
+    }
+
+    @Test
+    public void testSubmittedCommandsCompleteInOrder() {
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            // A small in-flight limit, so that submitting has to wait on replies part of the way through.
+            try (DBClient client = new DBClient("localhost", port, 8)) {
+                assertEquals(Arrays.asList("[OK]", "[OK]", "[OK]"), client.submitAll(Arrays.asList(
+                        "CREATE DATABASE clientDB;", "USE clientDB;", "CREATE TABLE marks (name, mark);")).join());
+                ArrayList<CompletableFuture<String>> inserts = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    inserts.add(client.submit("INSERT INTO marks VALUES ('Student" + i + "', " + i + ");"));
+                }
+                CompletableFuture<String> select = client.submit("SELECT name FROM marks WHERE mark >= 98;");
+                CompletableFuture<String> error = client.submit("SELECT * FROM missing;");
+                for (CompletableFuture<String> insert : inserts) {
+                    assertEquals("[OK]", insert.join());
+                }
+                assertEquals("[OK]\nname\nStudent98\nStudent99\n", select.join());
+                assertEquals("[ERROR] The table \"missing\" does not exist.", error.join());
+            }
+        });
+    }
+
+    @Test
+    public void testRunScript() throws IOException {
+        File script = Files.createTempFile("commands", ".sql").toFile();
+        try (FileWriter writer = new FileWriter(script)) {
+            writer.write("CREATE DATABASE clientDB;\nUSE clientDB;\n\nCREATE TABLE people (name);\n"
+                    + "INSERT INTO people VALUES ('Ann'), ('Bob');\nSELECT * FROM people;\n");
+        }
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            try (DBClient client = new DBClient("localhost", port)) {
+                List<String> replies = client.runScript(script.getPath()).join();
+                assertEquals(Arrays.asList("[OK]", "[OK]", "[OK]", "[OK]", "[OK]\nid\tname\n1\tAnn\n2\tBob\n"), replies);
+            }
+        });
+        script.delete();
+    }
+}
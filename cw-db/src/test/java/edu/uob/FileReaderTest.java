@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
@@ -40,4 +41,15 @@ public class FileReaderTest {
         assertEquals(tokens.get(7), "1", failedMessage);
         assertEquals(tokens.get(8), ")", failedMessage);
     }
+
+    @Test
+    public void testTokenizerOperators(){
+        ArrayList<String> tokens = new Tokenizer().tokenize("SELECT * FROM t WHERE (a===1) OR b!=c AND d<=e AND f>g;");
+        assertEquals(Arrays.asList("SELECT", "*", "FROM", "t", "WHERE", "(", "a", "==", "=", "1", ")", "OR",
+                "b", "!=", "c", "AND", "d", "<=", "e", "AND", "f", ">", "g", ";"), tokens);
+        tokens = new Tokenizer().tokenize("UPDATE t SET name='O', x=!=;");
+        assertEquals(Arrays.asList("UPDATE", "t", "SET", "name", "=", "'O'", ",", "x", "=", "!=", ";"), tokens);
+        tokens = new Tokenizer().tokenize("'unterminated");
+        assertEquals(Arrays.asList("", "'unterminated'"), tokens);
+    }
 }
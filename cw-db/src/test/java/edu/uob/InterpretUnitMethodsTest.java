@@ -932,13 +932,13 @@ public class InterpretUnitMethodsTest {
         assertEquals("[ERROR] The [AttributeName] \"beans\" does not exist for the [TableName] \"people\".", response);
 
         response = sendCommandToServer("this is complete garbage;");
-        assertEquals("[ERROR] Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" keyword to begin the query.", response);
+        assertEquals("[ERROR] Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" or \"LOAD\" or \"BEGIN\" or \"COMMIT\" or \"ROLLBACK\" keyword to begin the query.", response);
 
         response = sendCommandToServer(";");
-        assertEquals("[ERROR] Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" keyword to begin the query.", response);
+        assertEquals("[ERROR] Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" or \"LOAD\" or \"BEGIN\" or \"COMMIT\" or \"ROLLBACK\" keyword to begin the query.", response);
 
         response = sendCommandToServer("");
-        assertEquals("[ERROR] Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" keyword to begin the query.", response);
+        assertEquals("[ERROR] Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" or \"LOAD\" or \"BEGIN\" or \"COMMIT\" or \"ROLLBACK\" keyword to begin the query.", response);
 
         response = sendCommandToServer("update PEOPLE set asdf to NULL;");
         assertEquals("[ERROR] Expected a named value list after SET keyword.", response);
@@ -2194,4 +2194,41 @@ public class InterpretUnitMethodsTest {
         response = sendCommandToServer("DROP DATABASE myTestDatabase;");
         assertEquals("[OK]", response);
     }
+
+    @Test
+    public void testSelectProjection() {
+        assertEquals("[OK]", sendCommandToServer("CREATE DATABASE projectionDB;"));
+        assertEquals("[OK]", sendCommandToServer("USE projectionDB;"));
+        assertEquals("[OK]", sendCommandToServer("CREATE TABLE wide (a, b, c, d);"));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO wide VALUES (1, 2, 3, 4), (5, 6, 7, 8);"));
+        assertEquals("[OK]\nd\tb\td\n4\t2\t4\n8\t6\t8\n", sendCommandToServer("SELECT D, b, wide.d FROM wide;"));
+        assertEquals("[OK]\nc\n7\n", sendCommandToServer("SELECT c FROM wide WHERE a > 1;"));
+        // Projecting a result leaves the stored table whole.
+        assertEquals("[OK]\nid\ta\tb\tc\td\n1\t1\t2\t3\t4\n2\t5\t6\t7\t8\n", sendCommandToServer("SELECT * FROM wide;"));
+        assertEquals("[OK]", sendCommandToServer("DROP DATABASE projectionDB;"));
+    }
+
+    // UPDATE and DELETE find their rows through the id index, whatever the other columns hold.
+    @Test
+    public void testUpdateAndDeleteById() {
+        assertEquals("[OK]", sendCommandToServer("CREATE DATABASE idIndexDB;"));
+        assertEquals("[OK]", sendCommandToServer("USE idIndexDB;"));
+        assertEquals("[OK]", sendCommandToServer("CREATE TABLE marks (name, mark);"));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65), ('Dave', 55), ('Steve', 65), ('Bob', 35);"));
+        // Rows with the same values are still separate rows.
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Steve';"));
+        assertEquals("[OK]\nid\tname\tmark\n1\tSteve\t70\n2\tDave\t55\n3\tSteve\t70\n4\tBob\t35\n",
+                sendCommandToServer("SELECT * FROM marks;"));
+        assertEquals("[OK]", sendCommandToServer("DELETE FROM marks WHERE mark == 70;"));
+        // Deleting rows that are already gone changes nothing.
+        assertEquals("[OK]", sendCommandToServer("DELETE FROM marks WHERE mark == 70;"));
+        assertEquals("[OK]\nid\tname\tmark\n2\tDave\t55\n4\tBob\t35\n", sendCommandToServer("SELECT * FROM marks;"));
+        // Later rows get new ids, and the index finds both old and new rows.
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Ann', 35);"));
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET name = 'Low' WHERE mark == 35;"));
+        assertEquals("[OK]\nid\tname\tmark\n2\tDave\t55\n4\tLow\t35\n5\tLow\t35\n", sendCommandToServer("SELECT * FROM marks;"));
+        assertEquals("[OK]", sendCommandToServer("DELETE FROM marks WHERE id == 4;"));
+        assertEquals("[OK]\nid\tname\n2\tDave\n5\tLow\n", sendCommandToServer("SELECT id, name FROM marks;"));
+        assertEquals("[OK]", sendCommandToServer("DROP DATABASE idIndexDB;"));
+    }
 }
@@ -0,0 +1,75 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockManagerTest {
+
+    @Test
+    public void testReadersShareAndWritersWait() throws InterruptedException {
+        LockManager lockManager = new LockManager();
+        Lock reading = lockManager.lock("db/marks", false);
+        CountDownLatch secondReader = new CountDownLatch(1);
+        CountDownLatch writer = new CountDownLatch(1);
+        CountDownLatch otherTable = new CountDownLatch(1);
+        new Thread(() -> {
+            lockManager.lock("db/marks", false).unlock();
+            secondReader.countDown();
+        }).start();
+        new Thread(() -> {
+            lockManager.lock("db/marks", true).unlock();
+            writer.countDown();
+        }).start();
+        new Thread(() -> {
+            lockManager.lock("db/people", true).unlock();
+            otherTable.countDown();
+        }).start();
+        assertTrue(secondReader.await(1, TimeUnit.SECONDS));
+        assertTrue(otherTable.await(1, TimeUnit.SECONDS));
+        assertFalse(writer.await(100, TimeUnit.MILLISECONDS));
+        reading.unlock();
+        assertTrue(writer.await(1, TimeUnit.SECONDS));
+    }
+
+    // Without exclusive locks, inserts racing on the id counter and the cached table lose rows.
+    @Test
+    public void testConcurrentInsertsKeepEveryRow() {
+        DBServer server = new DBServer();
+        server.handleCommand("CREATE DATABASE lockDB;");
+        server.handleCommand("USE lockDB;");
+        server.handleCommand("CREATE TABLE marks (name, mark);");
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            Thread[] clients = new Thread[8];
+            for (int i = 0; i < clients.length; i++) {
+                int client = i;
+                clients[i] = new Thread(() -> {
+                    Session session = server.newSession();
+                    server.handleCommand("USE lockDB;", session);
+                    for (int j = 0; j < 25; j++) {
+                        server.handleCommand("INSERT INTO marks VALUES ('c" + client + "', " + j + ");", session);
+                        server.handleCommand("SELECT * FROM marks WHERE mark > 10;", session);
+                    }
+                });
+                clients[i].start();
+            }
+            for (Thread client : clients) {
+                client.join();
+            }
+        });
+        String[] lines = server.handleCommand("SELECT id FROM marks;").split("\n");
+        HashSet<String> ids = new HashSet<>();
+        for (int i = 2; i < lines.length; i++) {
+            ids.add(lines[i]);
+        }
+        assertEquals(200, lines.length - 2);
+        assertEquals(200, ids.size());
+        server.handleCommand("DROP DATABASE lockDB;");
+    }
+}
@@ -0,0 +1,70 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        sendCommandToServer("CREATE DATABASE metricsDB;");
+        sendCommandToServer("USE metricsDB;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65), ('Dave', 55), ('Bob', 35);");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sendCommandToServer("DROP DATABASE metricsDB;");
+    }
+
+    private String sendCommandToServer(String command) {
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        // Each value is only kept to within 1/32 of itself.
+        assertEquals(50000000, histogram.getValueAtPercentile(0.5), 50000000 / 32.0);
+        assertEquals(99000000, histogram.getValueAtPercentile(0.99), 99000000 / 32.0);
+        assertEquals(100000000, histogram.getValueAtPercentile(1));
+        for (long value = 0; value < 1000000; value += 997) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testShowStats() {
+        server.getMetrics().reset();
+        sendCommandToServer("SELECT * FROM marks WHERE mark > 50;");
+        sendCommandToServer("SELECT * FROM marks WHERE mark > 50;");
+        sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Bob';");
+        sendCommandToServer("nonsense;");
+        assertEquals("[ERROR] Expected SHOW STATS;", sendCommandToServer("SHOW TABLES;"));
+        String stats = sendCommandToServer("SHOW STATS;");
+        assertTrue(stats.startsWith("[OK]\nstatement\tcount\trowsScanned\trowsReturned\tbytesRead\tbytesWritten\n"));
+        assertTrue(stats.contains("\nINVALID\t1\t0\t0\t0\t0\n"));
+        assertTrue(stats.contains("\nSELECT\t2\t6\t4\t0\t0\n"));
+        assertTrue(stats.contains("\nSHOW\t1\t"));
+        assertTrue(stats.contains("\nSELECT\tserialize\t"));
+        assertEquals(2, server.getMetrics().getStatementCounts().get("SELECT"));
+        assertTrue(server.getMetrics().getBytesWritten().get("UPDATE") > 0);
+        assertTrue(server.getMetrics().getLatencyPercentileMicros(99).get("UPDATE.persist") > 0);
+    }
+}
@@ -0,0 +1,56 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelScanTest {
+
+    @Test
+    public void testChunksOnlyTestCandidates() {
+        IntPredicate test = i -> i % 7 == 3 || i == 0;
+        for (int size : new int[] {0, 1, 63, 64, 65, 1000, 100003}) {
+            BitSet candidates = new BitSet();
+            BitSet expected = new BitSet();
+            for (int i = 0; i < size; i++) {
+                if (i % 2 == 0 || i == size - 1) candidates.set(i);
+                if (candidates.get(i) && test.test(i)) expected.set(i);
+            }
+            // Chunk sizes that are not a multiple of 64 are rounded up.
+            assertEquals(expected, ParallelScan.select(test, candidates, 100));
+            assertEquals(expected, ParallelScan.select(test, candidates));
+        }
+    }
+
+    @Test
+    public void testLargeTablesAreFilteredOnSeveralThreads() {
+        Table table = new Table("marks");
+        table.addFields(new ArrayList<>(Arrays.asList("name", "mark")), true);
+        // Over twice the threshold, and a whole number of hundreds so that one row in fifty matches.
+        int size = (ParallelScan.PARALLEL_ROWS / 50 + 1) * 100;
+        for (int i = 0; i < size; i++) {
+            table.addRows(new ArrayList<>(Arrays.asList(Integer.toString(i + 1), "s" + i, Integer.toString(i % 100))));
+        }
+        ConcurrentHashMap<Thread, Boolean> threads = new ConcurrentHashMap<>();
+        Condition recording = t -> i -> {
+            threads.put(Thread.currentThread(), true);
+            return true;
+        };
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            Condition.filter(table, Condition.and(recording, new Comparison(2, ">=", "98")));
+        });
+        assertEquals(size / 50, table.getNumberOfRows());
+        assertEquals("s98", table.getRows().get(0).getValue(1));
+        assertEquals("s" + (size - 1), table.getRows().get(table.getNumberOfRows() - 1).getValue(1));
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertTrue(threads.size() > 1);
+        }
+    }
+}
@@ -1096,7 +1096,7 @@ public class ParseIntegratedMethodsTest {
         Parser parser = setParser(input);
         parser.setParsing();
         assertFalse(parser.isCommand());
-        assertEquals(parser.getErrorMessage(), "Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" keyword to begin the query.");
+        assertEquals(parser.getErrorMessage(), "Expected \"USE\" or \"CREATE\" or \"DROP\" or \"ALTER\" or \"INSERT\" or \"SELECT\" or \"UPDATE\" or \"DELETE\" or \"JOIN\" or \"LOAD\" or \"BEGIN\" or \"COMMIT\" or \"ROLLBACK\" keyword to begin the query.");
     }
 
     @Test
@@ -1360,6 +1360,62 @@ public class ParseIntegratedMethodsTest {
         //assertEquals(parser.getErrorMessage(), "Expected a [BoolOperator] AND or OR instead of \"(\" in a multi-conditioned statement.");
     }
 
+    @Test
+    void testIsCommandFail45() {
+        String input = "CREATE TABLE load (name);";
+        Parser parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+    }
+
+    @Test
+    void testIsCommandFail46() {
+        String input = "ALTER TABLE tableName ADD load;";
+        Parser parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+        assertEquals(parser.getErrorMessage(), "The [AttributeName] \"load\" matches the SQL keyword LOAD.");
+    }
+
+    @Test
+    void testIsCommandFail47() {
+        String input = "CREATE INDEX index ON tableName (attr1);";
+        Parser parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+        assertEquals(parser.getErrorMessage(), "The [IndexName] \"index\" matches the SQL keyword INDEX.");
+    }
+
+    @Test
+    void testIsCommandFail48() {
+        String input = "CREATE TABLE begin (a);";
+        Parser parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+    }
+
+    @Test
+    void testIsCommandFail49() {
+        String input = "ALTER TABLE commit ADD rollback;";
+        Parser parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+        assertEquals(parser.getErrorMessage(), "The [TableName] \"commit\" matches the SQL keyword COMMIT.");
+    }
+
+    @Test
+    void testIsCommandFail50() {
+        String input = "CREATE TABLE prepare (show);";
+        Parser parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+        input = "ALTER TABLE tableName ADD show;";
+        parser = setParser(input);
+        parser.setParsing();
+        assertFalse(parser.isCommand());
+        assertEquals(parser.getErrorMessage(), "The [AttributeName] \"show\" matches the SQL keyword SHOW.");
+    }
+
     @Test
     public void testIsCreate45() {
         String input = "CREATE TABLE tableName (plaintext);";
@@ -0,0 +1,71 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedStatementTest {
+    private DBServer server;
+    private Session session;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        session = server.newSession();
+        sendCommandToServer("CREATE DATABASE preparedDB;");
+        sendCommandToServer("USE preparedDB;");
+        sendCommandToServer("CREATE TABLE marks (name, mark, pass);");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sendCommandToServer("DROP DATABASE preparedDB;");
+    }
+
+    private String sendCommandToServer(String command) {
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command, session);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    @Test
+    public void testPrepareAndExecute() {
+        assertEquals("[OK]", sendCommandToServer("PREPARE add AS INSERT INTO marks VALUES (?, ?, ?);"));
+        assertEquals("[OK]", sendCommandToServer("PREPARE find AS SELECT name FROM marks WHERE (mark > ?) AND (pass == ?);"));
+        assertEquals("[OK]", sendCommandToServer("EXECUTE add USING 'Steve', 65, TRUE;"));
+        assertEquals("[OK]", sendCommandToServer("EXECUTE add USING 'Dave', 55, TRUE;"));
+        assertEquals("[OK]", sendCommandToServer("EXECUTE add USING 'Bob', 35, FALSE;"));
+        assertEquals("[OK]\nname\nSteve\n", sendCommandToServer("EXECUTE find USING 60, TRUE;"));
+        assertEquals("[OK]\nname\nSteve\nDave\n", sendCommandToServer("EXECUTE find USING 50, TRUE;"));
+
+        assertEquals("[OK]", sendCommandToServer("PREPARE mark AS UPDATE marks SET mark = ? WHERE name == ?;"));
+        assertEquals("[OK]", sendCommandToServer("EXECUTE mark USING 70, 'Dave';"));
+        assertEquals("[OK]\nid\tname\tmark\tpass\n2\tDave\t70\tTRUE\n", sendCommandToServer("SELECT * FROM marks WHERE mark > 66;"));
+    }
+
+    @Test
+    public void testExecuteErrors() {
+        assertEquals("[OK]", sendCommandToServer("PREPARE find AS SELECT name FROM marks WHERE mark > ?;"));
+        assertEquals("[ERROR] The prepared statement \"find\" takes 1 values.", sendCommandToServer("EXECUTE find;"));
+        assertEquals("[ERROR] The prepared statement \"lost\" does not exist.", sendCommandToServer("EXECUTE lost USING 1;"));
+        assertTrue(sendCommandToServer("EXECUTE find USING marks;").startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("PREPARE bad AS CREATE TABLE other;").startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("PREPARE bad AS SELECT * FROM ?;").startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("SELECT name FROM marks WHERE mark > ?;").startsWith("[ERROR]"));
+        assertEquals("[OK]", sendCommandToServer("DEALLOCATE find;"));
+        assertEquals("[ERROR] The prepared statement \"find\" does not exist.", sendCommandToServer("EXECUTE find USING 1;"));
+    }
+
+    @Test
+    public void testCachedPlanStillReportsErrors() {
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65, TRUE);");
+        String first = sendCommandToServer("SELECT * FROM marks WHERE   mark > 60;");
+        assertEquals(first, sendCommandToServer("SELECT * FROM marks WHERE mark > 60;"));
+        sendCommandToServer("ALTER TABLE marks DROP mark;");
+        assertEquals("[ERROR] The [AttributeName] \"mark\" does not exist for the [TableName] \"marks\".",
+                sendCommandToServer("SELECT * FROM marks WHERE mark > 60;"));
+    }
+}
@@ -0,0 +1,194 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorServerTest {
+    private DBServer server;
+    private SelectorServer selectorServer;
+    private Thread serverThread;
+    private int port;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new DBServer();
+        // Short enough that a test of a client that stops reading does not time out first.
+        System.setProperty("db.selector.writeTimeoutMillis", "500");
+        try {
+            selectorServer = new SelectorServer(server, 2);
+        } finally {
+            System.clearProperty("db.selector.writeTimeoutMillis");
+        }
+        port = selectorServer.bind(0);
+        serverThread = new Thread(() -> {
+            try {
+                selectorServer.serve();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        serverThread.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        server.handleCommand("DROP DATABASE selectorDB;");
+        selectorServer.stop();
+        serverThread.join(1000);
+    }
+
+    // Reads one reply, up to and including its END_OF_TRANSMISSION line.
+    private String readReply(BufferedReader reader) throws IOException {
+        StringBuilder reply = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null && !line.equals("" + DBServer.END_OF_TRANSMISSION)) {
+            reply.append(line).append("\n");
+        }
+        return reply.toString();
+    }
+
+    @Test
+    public void testPipelinedCommandsReplyInOrder() {
+        assertTimeoutPreemptively(Duration.ofMillis(2000), () -> {
+            try (Socket socket = new Socket("localhost", port);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                OutputStream output = socket.getOutputStream();
+                // Everything in one write, without waiting for any reply.
+                output.write(("CREATE DATABASE selectorDB;\nUSE selectorDB;\nCREATE TABLE marks (name, mark);\n"
+                        + "INSERT INTO marks VALUES ('Steve', 65);\r\nINSERT INTO marks VALUES ('Dave', 55);\n"
+                        + "SELECT name FROM marks WHERE mark > 60;\nSELECT * FROM missing;\n").getBytes());
+                output.flush();
+                for (int i = 0; i < 5; i++) {
+                    assertEquals("[OK]\n", readReply(reader));
+                }
+                assertEquals("[OK]\nname\nSteve\n\n", readReply(reader));
+                assertEquals("[ERROR] The table \"missing\" does not exist.\n", readReply(reader));
+            }
+        });
+    }
+
+    @Test
+    public void testConnectionsKeepSeparateSessions() {
+        assertTimeoutPreemptively(Duration.ofMillis(2000), () -> {
+            try (Socket first = new Socket("localhost", port);
+                 Socket second = new Socket("localhost", port);
+                 BufferedReader firstReader = new BufferedReader(new InputStreamReader(first.getInputStream()));
+                 BufferedReader secondReader = new BufferedReader(new InputStreamReader(second.getInputStream()))) {
+                first.getOutputStream().write("CREATE DATABASE selectorDB;\nUSE selectorDB;\nCREATE TABLE people (name);\n".getBytes());
+                for (int i = 0; i < 3; i++) {
+                    assertEquals("[OK]\n", readReply(firstReader));
+                }
+                // A command split across writes is only run once its newline arrives.
+                second.getOutputStream().write("SELECT * FROM ".getBytes());
+                second.getOutputStream().flush();
+                second.getOutputStream().write("people;\n".getBytes());
+                assertTrue(readReply(secondReader).startsWith("[ERROR]"));
+                first.getOutputStream().write("SELECT * FROM people;\n".getBytes());
+                assertEquals("[OK]\nid\tname\n\n", readReply(firstReader));
+            }
+        });
+    }
+
+    // Large replies go out in pieces as they are written, and reach the client whole and in order.
+    @Test
+    public void testLargeRepliesAreStreamed() {
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            try (Socket socket = new Socket("localhost", port);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                StringBuilder insert = new StringBuilder("INSERT INTO marks VALUES ");
+                for (int i = 0; i < 5000; i++) {
+                    insert.append(i == 0 ? "" : ", ").append("('student").append(i).append("', ").append(i).append(")");
+                }
+                OutputStream output = socket.getOutputStream();
+                output.write(("CREATE DATABASE selectorDB;\nUSE selectorDB;\nCREATE TABLE marks (name, mark);\n"
+                        + insert + ";\nSELECT * FROM marks;\nSELECT name FROM marks WHERE mark == 4999;\n").getBytes());
+                output.flush();
+                for (int i = 0; i < 4; i++) {
+                    assertEquals("[OK]\n", readReply(reader));
+                }
+                String[] lines = readReply(reader).split("\n");
+                assertEquals(5002, lines.length);
+                assertEquals("5000\tstudent4999\t4999", lines[5001]);
+                assertEquals("[OK]\nname\nstudent4999\n\n", readReply(reader));
+            }
+        });
+    }
+
+    @Test
+    public void testOverlongLinesDisconnect() {
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            try (Socket socket = new Socket("localhost", port);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                byte[] line = new byte[64 * 1024];
+                Arrays.fill(line, (byte) 'x');
+                OutputStream output = socket.getOutputStream();
+                try {
+                    for (int i = 0; i < 32; i++) {
+                        output.write(line);
+                    }
+                } catch (IOException e) {
+                    // The server may already have hung up.
+                }
+                // The server hangs up instead of buffering the line without end.
+                String reply;
+                try {
+                    reply = reader.readLine();
+                } catch (IOException e) {
+                    reply = null;
+                }
+                assertNull(reply);
+            }
+        });
+    }
+
+    // Clients that pipeline large replies and never read them are dropped, instead of holding every worker.
+    @Test
+    public void testClientsThatStopReadingAreDisconnected() {
+        assertTimeoutPreemptively(Duration.ofMillis(10000), () -> {
+            try (Socket first = new Socket();
+                 Socket second = new Socket();
+                 Socket third = new Socket("localhost", port);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(third.getInputStream()))) {
+                StringBuilder insert = new StringBuilder("INSERT INTO marks VALUES ");
+                for (int i = 0; i < 5000; i++) {
+                    insert.append(i == 0 ? "" : ", ").append("('student").append(i).append("', ").append(i).append(")");
+                }
+                third.getOutputStream().write(("CREATE DATABASE selectorDB;\nUSE selectorDB;\nCREATE TABLE marks (name, mark);\n"
+                        + insert + ";\n").getBytes());
+                for (int i = 0; i < 4; i++) {
+                    assertEquals("[OK]\n", readReply(reader));
+                }
+                // Far more than the socket buffers and MAX_PENDING_OUTPUT can take, on both workers.
+                String selects = "USE selectorDB;\n" + "SELECT * FROM marks;\n".repeat(200);
+                for (Socket slow : new Socket[] {first, second}) {
+                    slow.setReceiveBufferSize(4096);
+                    slow.connect(new InetSocketAddress("localhost", port));
+                    slow.getOutputStream().write(selects.getBytes());
+                }
+                Thread.sleep(200);
+                third.getOutputStream().write("SELECT name FROM marks WHERE mark == 4999;\n".getBytes());
+                assertEquals("[OK]\nname\nstudent4999\n\n", readReply(reader));
+                // The slow clients' replies end early, where the server hung up.
+                for (Socket slow : new Socket[] {first, second}) {
+                    try {
+                        slow.getInputStream().transferTo(OutputStream.nullOutputStream());
+                    } catch (IOException e) {
+                        // A reset is a hang-up too.
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package edu.uob;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTest {
+    private DBServer server;
+
+    // Create a new server _before_ every @Test
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+    }
+
+    private String sendCommandToServer(String command, Session session) {
+        // Try to send a command to the server - this call will timeout if it takes too long (in case the server enters an infinite loop)
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command, session);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    @Test
+    public void testSessionsKeepSeparateDatabases() {
+        Session first = server.newSession();
+        Session second = server.newSession();
+        assertEquals("[OK]", sendCommandToServer("CREATE DATABASE sessionDB1;", first));
+        assertEquals("[OK]", sendCommandToServer("CREATE DATABASE sessionDB2;", first));
+
+        assertEquals("[OK]", sendCommandToServer("USE sessionDB1;", first));
+        assertEquals("[OK]", sendCommandToServer("CREATE TABLE people (name);", first));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO people VALUES('Ann');", first));
+
+        assertEquals("[OK]", sendCommandToServer("USE sessionDB2;", second));
+        assertEquals("[ERROR] The table \"people\" does not exist.", sendCommandToServer("SELECT * FROM people;", second));
+
+        String response = sendCommandToServer("SELECT * FROM people;", first);
+        assertTrue(response.contains("1\tAnn\n"));
+
+        assertEquals("[OK]", sendCommandToServer("DROP DATABASE sessionDB1;", first));
+        assertEquals("[OK]", sendCommandToServer("DROP DATABASE sessionDB2;", first));
+    }
+
+    @Test
+    public void testSessionsRunInParallel() throws InterruptedException {
+        Session setup = server.newSession();
+        assertEquals("[OK]", sendCommandToServer("CREATE DATABASE sessionDB3;", setup));
+        Thread[] clients = new Thread[4];
+        String[] results = new String[clients.length];
+        for (int i = 0; i < clients.length; i++) {
+            int client = i;
+            clients[i] = new Thread(() -> {
+                Session session = server.newSession();
+                server.handleCommand("USE sessionDB3;", session);
+                server.handleCommand("CREATE TABLE client" + client + " (value);", session);
+                server.handleCommand("INSERT INTO client" + client + " VALUES(" + client + ");", session);
+                results[client] = server.handleCommand("SELECT value FROM client" + client + ";", session);
+            });
+            clients[i].start();
+        }
+        for (int i = 0; i < clients.length; i++) {
+            clients[i].join();
+            assertTrue(results[i].contains("value\n" + i + "\n"));
+        }
+        assertEquals("[OK]", sendCommandToServer("DROP DATABASE sessionDB3;", setup));
+    }
+}
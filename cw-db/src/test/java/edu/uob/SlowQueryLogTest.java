@@ -0,0 +1,96 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowQueryLogTest {
+
+    @Test
+    public void testLogsStatementsOverThreshold() throws IOException {
+        Path folder = Files.createTempDirectory("slowlog");
+        File file = folder.resolve(SlowQueryLog.FILE_NAME).toFile();
+        SlowQueryLog log = new SlowQueryLog(file, 0, 1024 * 1024, 2);
+        Metrics.Trace trace = new Metrics.Trace();
+        trace.addRowsScanned(7);
+        trace.addComparisons(2);
+        trace.addJoin(3, 4, 5);
+        trace.addJoin(5, 1, 0);
+        trace.addRowsReturned(0);
+        trace.mark(Metrics.Phase.EXECUTE);
+        trace.finish();
+        log.log("  SELECT * FROM a JOIN b ON x AND y;", trace);
+        new SlowQueryLog(file, -1, 1024 * 1024, 2).log("USE a;", trace);
+        log.close();
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(1, lines.size());
+        String[] fields = lines.get(0).split("\t");
+        assertEquals(12, fields.length);
+        assertTrue(fields[1].startsWith("totalMs="));
+        assertEquals("executeMs=", fields[4].substring(0, 10));
+        assertEquals("rowsScanned=7", fields[7]);
+        assertEquals("comparisons=2", fields[8]);
+        assertEquals("joins=3*4=5,5*1=0", fields[9]);
+        assertEquals("rowsReturned=0", fields[10]);
+        assertEquals("SELECT * FROM a JOIN b ON x AND y;", fields[11]);
+        // Nothing more is written once the log is closed.
+        log.log("USE a;", trace);
+        assertEquals(1, Files.readAllLines(file.toPath()).size());
+    }
+
+    @Test
+    public void testRotatesFiles() throws IOException {
+        Path folder = Files.createTempDirectory("slowlog");
+        File file = folder.resolve(SlowQueryLog.FILE_NAME).toFile();
+        for (int round = 0; round < 4; round++) {
+            SlowQueryLog log = new SlowQueryLog(file, 0, 100, 2);
+            Metrics.Trace trace = new Metrics.Trace();
+            trace.finish();
+            log.log("SELECT * FROM round" + round + ";", trace);
+            log.close();
+        }
+        // Every line is over 100 bytes, so each write rotates and only the two newest are kept.
+        assertFalse(file.exists());
+        assertTrue(Files.readString(folder.resolve("slow.log.1")).contains("round3"));
+        assertTrue(Files.readString(folder.resolve("slow.log.2")).contains("round2"));
+        assertFalse(folder.resolve("slow.log.3").toFile().exists());
+    }
+
+    @Test
+    public void testServerLogsJoinSizes() throws IOException {
+        System.setProperty("db.slowlog.millis", "0");
+        DBServer server;
+        try {
+            server = new DBServer();
+        } finally {
+            System.clearProperty("db.slowlog.millis");
+        }
+        File file = new File("databases", SlowQueryLog.FILE_NAME);
+        file.delete();
+        DBServer logging = server;
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> {
+            logging.handleCommand("CREATE DATABASE slowDB;");
+            logging.handleCommand("USE slowDB;");
+            logging.handleCommand("CREATE TABLE a (k);");
+            logging.handleCommand("CREATE TABLE b (k);");
+            logging.handleCommand("INSERT INTO a VALUES (1), (2), (2);");
+            logging.handleCommand("INSERT INTO b VALUES (2), (3);");
+            logging.handleCommand("JOIN a AND b ON k AND k;");
+            logging.handleCommand("SELECT * FROM a WHERE k == 2 OR k == 1;");
+            logging.handleCommand("DROP DATABASE slowDB;");
+        });
+        server.close();
+        List<String> lines = Files.readAllLines(file.toPath());
+        file.delete();
+        assertEquals(9, lines.size());
+        assertTrue(lines.get(6).contains("\trowsScanned=5\tcomparisons=0\tjoins=3*2=2\trowsReturned=2\tJOIN a AND b ON k AND k;"));
+        assertTrue(lines.get(7).contains("\trowsScanned=3\tcomparisons=2\tjoins=\trowsReturned=3\tSELECT"));
+    }
+}
@@ -0,0 +1,93 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingTest {
+    private DBServer server;
+    private Session session;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        session = server.newSession();
+        sendCommandToServer("CREATE DATABASE streamingDB;");
+        sendCommandToServer("USE streamingDB;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65), ('Dave', NULL), ('Bob', 35), ('Clive', 20);");
+        sendCommandToServer("CREATE TABLE coursework (task, submission);");
+        sendCommandToServer("INSERT INTO coursework VALUES ('OXO', 3), ('DB', 2), ('OXO', 4), ('STAG', NULL);");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        session.close();
+        server.handleCommand("DROP DATABASE streamingDB;");
+    }
+
+    private String sendCommandToServer(String command) {
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command, session);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    // Counts the writes it is given, and encodes them through a small buffer as a socket writer would.
+    private static class CountingWriter extends Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        private int writes = 0;
+
+        @Override
+        public void write(char[] characters, int offset, int length) throws IOException {
+            writes += 1;
+            out.write(characters, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // The streamed reply is byte for byte the reply handleCommand returns, and arrives in pieces.
+    private String assertStreamsSameBytes(String command) throws IOException {
+        String expected = sendCommandToServer(command);
+        CountingWriter writer = new CountingWriter();
+        server.handleCommand(command, session, writer);
+        writer.flush();
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), writer.bytes.toByteArray(), command);
+        assertTrue(writer.writes > 1, command);
+        return expected;
+    }
+
+    @Test
+    public void testSelectStreamsSameBytes() throws IOException {
+        assertEquals("[OK]\nid\tname\tmark\n1\tSteve\t65\n2\tDave\tNULL\n3\tBob\t35\n4\tClive\t20\n",
+                assertStreamsSameBytes("SELECT * FROM marks;"));
+        assertEquals("[OK]\nname\n", assertStreamsSameBytes("SELECT name FROM marks WHERE mark > 100;"));
+        assertEquals("[OK]\nmark\tname\nNULL\tDave\n", assertStreamsSameBytes("SELECT mark, name FROM marks WHERE name == 'Dave';"));
+    }
+
+    @Test
+    public void testJoinStreamsSameBytes() throws IOException {
+        assertEquals("[OK]\nid\tcoursework.task\tmarks.name\tmarks.mark\n1\tOXO\tBob\t35\n2\tDB\tDave\tNULL\n"
+                        + "3\tOXO\tClive\t20\n",
+                assertStreamsSameBytes("JOIN coursework AND marks ON submission AND id;"));
+        // No task is anybody's name, so only the header comes back.
+        assertEquals(2, assertStreamsSameBytes("JOIN coursework AND marks ON task AND name;").split("\n").length);
+    }
+}
@@ -0,0 +1,154 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableCacheTest {
+
+    private Table makeTable(String name, int rows) {
+        Table table = new Table(name);
+        table.addFields(new ArrayList<>(Arrays.asList("name", "mark")), true);
+        for (int i = 0; i < rows; i++) {
+            table.addRows(new ArrayList<>(Arrays.asList("student" + i, Integer.toString(i))));
+        }
+        return table;
+    }
+
+    @Test
+    public void testGetReturnsPrivateCopy() {
+        TableCache cache = new TableCache();
+        cache.put("db" + File.separator + "marks", makeTable("marks", 3), false);
+        Table first = cache.get("db" + File.separator + "marks");
+        first.removeRows(0);
+        Table second = cache.get("db" + File.separator + "marks");
+        assertEquals(2, first.getNumberOfRows());
+        assertEquals(3, second.getNumberOfRows());
+        assertNull(cache.get("db" + File.separator + "missing"));
+    }
+
+    @Test
+    public void testEvictionWritesBackDirtyTables() throws Exception {
+        Path folder = Files.createTempDirectory("tablecache");
+        Table small = makeTable("small", 10);
+        TableCache cache = new TableCache(small.estimateBytes() + 1);
+        String firstKey = TableCache.key(folder.toString(), "first");
+        String secondKey = TableCache.key(folder.toString(), "second");
+        cache.put(firstKey, makeTable("first", 10), true);
+        assertFalse(new File(firstKey + ".tab").exists());
+
+        cache.put(secondKey, makeTable("second", 10), false);
+        assertFalse(cache.contains(firstKey));
+        assertTrue(cache.contains(secondKey));
+        assertTrue(new File(firstKey + ".tab").exists());
+
+        FileReading fileReading = new FileReading(folder.toString(), cache);
+        Table reloaded = fileReading.readFileToTable("first");
+        assertEquals(10, reloaded.getNumberOfRows());
+        assertEquals("student9", reloaded.getRows().get(9).getValue(1));
+    }
+
+    // A table too big for the cache is written straight through, but its old versions are still kept for snapshots.
+    @Test
+    public void testOversizedTablesKeepVersionsForSnapshots() throws Exception {
+        Path folder = Files.createTempDirectory("tablecache");
+        TableCache cache = new TableCache(1);
+        String key = TableCache.key(folder.toString(), "marks");
+        cache.put(key, makeTable("marks", 3), true);
+        assertFalse(cache.contains(key));
+        // A writer pins the table while it holds its lock, so the version it read is resident when it commits.
+        long snapshot = cache.openSnapshot();
+        cache.pin(key);
+        cache.put(key, makeTable("marks", 3), false);
+        cache.put(key, makeTable("marks", 4), true);
+        cache.unpin(key);
+        assertTrue(new File(key + ".tab").exists());
+        assertEquals(3, cache.get(key, snapshot).getNumberOfRows());
+        cache.closeSnapshot(snapshot);
+        assertFalse(cache.contains(key));
+        assertEquals(4, new FileReading(folder.toString(), cache).readFileToTable("marks").getNumberOfRows());
+    }
+
+    @Test
+    public void testSnapshotsKeepOldVersions() {
+        TableCache cache = new TableCache();
+        String key = "db" + File.separator + "marks";
+        cache.put(key, makeTable("marks", 3), false);
+        long first = cache.openSnapshot();
+        cache.put(key, makeTable("marks", 4), true);
+        long second = cache.openSnapshot();
+        cache.put(key, makeTable("marks", 5), true);
+        assertEquals(3, cache.get(key, first).getNumberOfRows());
+        assertEquals(4, cache.get(key, second).getNumberOfRows());
+        assertEquals(5, cache.get(key).getNumberOfRows());
+        // A table read from disk never replaces a newer one that is already resident.
+        cache.put(key, makeTable("marks", 1), false);
+        assertEquals(5, cache.get(key).getNumberOfRows());
+
+        // Once no snapshot can read a version it is dropped.
+        cache.closeSnapshot(first);
+        assertNull(cache.get(key, first));
+        assertEquals(4, cache.get(key, second).getNumberOfRows());
+        cache.closeSnapshot(second);
+        assertNull(cache.get(key, second));
+        assertEquals(5, cache.get(key, cache.openSnapshot()).getNumberOfRows());
+    }
+
+    // A reader holding a snapshot neither blocks a writer nor sees what it commits.
+    @Test
+    public void testSnapshotReadsDoNotBlockWriters() {
+        DBServer server = new DBServer();
+        server.handleCommand("CREATE DATABASE snapshotDB;");
+        server.handleCommand("USE snapshotDB;");
+        server.handleCommand("CREATE TABLE marks (name, mark);");
+        server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);");
+        FileReading reader = server.newSession().getFileReading();
+        reader.changePath("snapshotDB");
+        reader.lockTable("marks", false);
+        assertEquals(1, reader.readFileToTable("marks").getNumberOfRows());
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> {
+            assertEquals("[OK]", server.handleCommand("INSERT INTO marks VALUES ('Dave', 55);"));
+        });
+        assertEquals(1, reader.readFileToTable("marks").getNumberOfRows());
+        reader.unlockAll();
+        reader.lockTable("marks", false);
+        assertEquals(2, reader.readFileToTable("marks").getNumberOfRows());
+        reader.unlockAll();
+        server.handleCommand("DROP DATABASE snapshotDB;");
+    }
+
+    // Even with no room in the cache, a table a writer has locked stays resident, so readers never wait for it.
+    @Test
+    public void testLockedTablesStayResidentForReaders() {
+        System.setProperty("db.cache.bytes", "1");
+        DBServer server;
+        try {
+            server = new DBServer();
+        } finally {
+            System.clearProperty("db.cache.bytes");
+        }
+        Session writer = server.newSession();
+        Session reader = server.newSession();
+        server.handleCommand("CREATE DATABASE pinnedDB;", writer);
+        server.handleCommand("USE pinnedDB;", writer);
+        server.handleCommand("USE pinnedDB;", reader);
+        server.handleCommand("CREATE TABLE marks (name, mark);", writer);
+        server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);", writer);
+        server.handleCommand("BEGIN;", writer);
+        assertEquals("[OK]", server.handleCommand("UPDATE marks SET mark = 70 WHERE name == 'Steve';", writer));
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> {
+            assertEquals("[OK]\nmark\n65\n", server.handleCommand("SELECT mark FROM marks;", reader));
+        });
+        server.handleCommand("COMMIT;", writer);
+        assertEquals("[OK]\nmark\n70\n", server.handleCommand("SELECT mark FROM marks;", reader));
+        writer.close();
+        server.handleCommand("DROP DATABASE pinnedDB;", reader);
+    }
+}
@@ -0,0 +1,102 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableIndexTest {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        sendCommandToServer("CREATE DATABASE indexDB;");
+        sendCommandToServer("USE indexDB;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65), ('Dave', 55), ('Bob', 35), ('Clive', 20), ('Ann', 'high');");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sendCommandToServer("DROP DATABASE indexDB;");
+    }
+
+    private String sendCommandToServer(String command) {
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    // Every range comparison must pick out the same rows, in the same order, with or without an index.
+    @Test
+    public void testIndexedRangesMatchScans() {
+        String[] cells = {"5", "-5", "0", "-0", "+.5", "5.0", "1e3", "NaN", "TRUE", "NULL", "Steve", "steve", "", "10", "9.99", "a5", "Z"};
+        String[] values = {"5", "-0", "0.5", "10", "'5'", "'Steve'", "'a'", "''", "TRUE", "NULL"};
+        String[] comparators = {"<", "<=", ">", ">="};
+        Random random = new Random(14);
+        Table table = new Table("cells");
+        table.addFields(new ArrayList<>(Arrays.asList("value")), true);
+        for (int i = 0; i < 2000; i++) {
+            table.addRows(new ArrayList<>(Arrays.asList(cells[random.nextInt(cells.length)])));
+        }
+        Table indexed = table.duplicate();
+        indexed.addIndex("byValue", "value");
+        for (int round = 0; round < 3; round++) {
+            for (String comparator : comparators) {
+                for (String value : values) {
+                    Comparison comparison = new Comparison(1, comparator, value);
+                    int[] scanned = Condition.and(Condition.ALL, comparison::bind).select(table);
+                    assertArrayEquals(scanned, comparison.select(indexed), comparator + " " + value);
+                }
+            }
+            // Changes made after the index is built have to be kept in it.
+            for (int i = 0; i < 50; i++) {
+                String cell = cells[random.nextInt(cells.length)];
+                int row = random.nextInt(table.getNumberOfRows());
+                table.changeRow(row, 1, cell);
+                indexed.changeRow(indexed.getRows().get(row), 1, cell);
+            }
+            ArrayList<String> ids = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                ids.add(Integer.toString(random.nextInt(table.getNumberOfRows())));
+            }
+            table.removeRowsById(ids);
+            indexed.removeRowsById(ids);
+            for (int i = 0; i < 50; i++) {
+                ArrayList<String> row = new ArrayList<>(Arrays.asList(cells[random.nextInt(cells.length)]));
+                table.addRows(row);
+                indexed.addRows(row);
+            }
+        }
+    }
+
+    @Test
+    public void testCreateAndDropIndex() {
+        assertEquals("[OK]", sendCommandToServer("CREATE INDEX byMark ON marks (mark);"));
+        assertEquals("[OK]\nname\nSteve\nDave\n", sendCommandToServer("SELECT name FROM marks WHERE mark > 50;"));
+        assertEquals("[OK]\nname\nAnn\n", sendCommandToServer("SELECT name FROM marks WHERE mark >= 'a';"));
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 80 WHERE name == 'Bob';"));
+        assertEquals("[OK]", sendCommandToServer("DELETE FROM marks WHERE name == 'Steve';"));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Tom', 51);"));
+        assertEquals("[OK]\nname\nDave\nBob\nTom\n", sendCommandToServer("SELECT name FROM marks WHERE mark > 50;"));
+        assertEquals("[ERROR] The index \"byMark\" already exists on the table \"marks\".",
+                sendCommandToServer("CREATE INDEX byMark ON marks (name);"));
+        assertTrue(sendCommandToServer("CREATE INDEX byAge ON marks (age);").startsWith("[ERROR]"));
+
+        // The definition is kept with the table, so a restarted server still has the index.
+        server.close();
+        server = new DBServer();
+        sendCommandToServer("USE indexDB;");
+        assertEquals("[OK]\nname\nDave\nBob\nTom\n", sendCommandToServer("SELECT name FROM marks WHERE mark > 50;"));
+        assertEquals("[OK]", sendCommandToServer("DROP INDEX byMark ON marks;"));
+        assertEquals("[ERROR] Cannot drop index \"byMark\" as it does not exist on the table \"marks\".",
+                sendCommandToServer("DROP INDEX byMark ON marks;"));
+        assertEquals("[OK]\nname\nDave\nBob\nTom\n", sendCommandToServer("SELECT name FROM marks WHERE mark > 50;"));
+    }
+}
@@ -0,0 +1,69 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableJoinTest {
+
+    private Table randomTable(String name, int rows, Random random, boolean sorted) {
+        Table table = new Table(name);
+        table.addFields(new ArrayList<>(Arrays.asList("key", "payload")), true);
+        for (int i = 0; i < rows; i++) {
+            String key = String.format("k%05d", sorted ? i / 3 : random.nextInt(20));
+            table.addRows(new ArrayList<>(Arrays.asList(key, name + i)));
+        }
+        return table;
+    }
+
+    // The nested loop the join used to be, kept here as the reference result.
+    private String nestedLoop(Table left, Table right, int leftIndex, int rightIndex) {
+        StringBuilder result = new StringBuilder();
+        int id = 1;
+        for (Row leftRow : left.getRows()) {
+            for (Row rightRow : right.getRows()) {
+                if (leftRow.getValue(leftIndex).equals(rightRow.getValue(rightIndex))) {
+                    result.append(id++).append("|").append(leftRow.getValue(2)).append("|").append(rightRow.getValue(2)).append("\n");
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    private String joined(Table left, Table right, TableJoin.Strategy strategy) {
+        Table target = new Table("joined");
+        target.addFields(new ArrayList<>(Arrays.asList("left.payload", "right.payload")), true);
+        new TableJoin(left, 1, right, 1).execute(target, strategy);
+        StringBuilder result = new StringBuilder();
+        for (Row row : target.getRows()) {
+            result.append(row.getValue(0)).append("|").append(row.getValue(1)).append("|").append(row.getValue(2)).append("\n");
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testStrategiesMatchNestedLoop() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            Table left = randomTable("left", random.nextInt(60), random, round % 4 == 0);
+            Table right = randomTable("right", random.nextInt(60), random, round % 3 == 0);
+            String expected = nestedLoop(left, right, 1, 1);
+            assertEquals(expected, joined(left, right, TableJoin.Strategy.HASH));
+            assertEquals(expected, joined(left, right, TableJoin.Strategy.SORT_MERGE));
+        }
+    }
+
+    @Test
+    public void testPresortedInputsChooseSortMerge() {
+        Random random = new Random(7);
+        Table left = randomTable("left", 1000, random, true);
+        Table right = randomTable("right", 1000, random, true);
+        assertEquals(TableJoin.Strategy.SORT_MERGE, new TableJoin(left, 1, right, 1).chooseStrategy());
+        Table unsorted = randomTable("unsorted", 1000, random, false);
+        assertEquals(TableJoin.Strategy.HASH, new TableJoin(left, 1, unsorted, 1).chooseStrategy());
+    }
+}
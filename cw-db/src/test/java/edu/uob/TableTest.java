@@ -0,0 +1,59 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableTest {
+
+    @Test
+    public void testFieldLookupIgnoresCase() {
+        Table table = new Table("people");
+        table.addFields(new ArrayList<>(Arrays.asList("Name", "age", "AGE", "town")), true);
+        assertEquals(1, table.getFieldIndex("name"));
+        assertEquals("Name", table.getRealField("NAME"));
+        // The first of two names that differ only in case wins, as with a scan.
+        assertEquals(2, table.getFieldIndex("Age"));
+        assertEquals(-1, table.getFieldIndex("missing"));
+        assertEquals("", table.getRealField("missing"));
+        assertFalse(table.existsField("missing"));
+
+        table.removeColumn(2);
+        assertEquals(2, table.getFieldIndex("age"));
+        assertEquals("AGE", table.getRealField("age"));
+        assertEquals(3, table.getFieldIndex("TOWN"));
+        table.removeColumn(2);
+        assertFalse(table.existsField("age"));
+        assertEquals(2, table.getFieldIndex("town"));
+    }
+
+    @Test
+    public void testRemoveRowsByIdKeepsIndexInStep() {
+        Table table = new Table("marks");
+        table.addFields(new ArrayList<>(Arrays.asList("name", "mark")), true);
+        for (int i = 1; i <= 5; i++) {
+            table.addRows(new ArrayList<>(Arrays.asList(Integer.toString(i), "Steve", "65")));
+        }
+        assertSame(table.getRows().get(2), table.getRowById("3"));
+        // Ids listed twice, or not in the table, are ignored.
+        table.removeRowsById(Arrays.asList("2", "4", "2", "9"));
+        assertEquals(3, table.getNumberOfRows());
+        assertNull(table.getRowById("2"));
+        assertNull(table.getRowById("4"));
+        assertEquals("5", table.getRowById("5").getValue(0));
+        // Removing the same rows again changes nothing.
+        table.removeRowsById(Arrays.asList("2", "4"));
+        assertEquals(3, table.getNumberOfRows());
+
+        table.addRows(new ArrayList<>(Arrays.asList("6", "Dave", "55")));
+        assertEquals("Dave", table.getRowById("6").getValue(1));
+        table.removeRowsById(Arrays.asList("1", "6"));
+        assertNull(table.getRowById("6"));
+        assertEquals("3", table.getRows().get(0).getValue(0));
+        assertEquals("5", table.getRows().get(1).getValue(0));
+        assertSame(table.getRows().get(1), table.getRowById("5"));
+    }
+}
@@ -0,0 +1,149 @@
+package edu.uob;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionTest {
+    private DBServer server;
+    private Session first;
+    private Session second;
+
+    @BeforeEach
+    public void setup() {
+        // Short enough that a test waiting on a lock does not time out first.
+        System.setProperty("db.lock.timeoutMillis", "100");
+        try {
+            server = new DBServer();
+        } finally {
+            System.clearProperty("db.lock.timeoutMillis");
+        }
+        first = server.newSession();
+        second = server.newSession();
+        sendCommandToServer("CREATE DATABASE transactionDB;", first);
+        sendCommandToServer("USE transactionDB;", first);
+        sendCommandToServer("USE transactionDB;", second);
+        sendCommandToServer("CREATE TABLE marks (name, mark);", first);
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65);", first);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        first.close();
+        second.close();
+        server.handleCommand("DROP DATABASE transactionDB;");
+    }
+
+    private String sendCommandToServer(String command, Session session) {
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command, session);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    @Test
+    public void testCommitAndRollback() {
+        assertEquals("[ERROR] There is no transaction in progress.", sendCommandToServer("COMMIT;", first));
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", first));
+        assertEquals("[ERROR] A transaction is already in progress.", sendCommandToServer("begin;", first));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Dave', 55);", first));
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Steve';", first));
+        assertEquals("[OK]", sendCommandToServer("CREATE TABLE people (name);", first));
+        assertEquals("[ERROR] Cannot drop a table inside a transaction.", sendCommandToServer("DROP TABLE people;", first));
+        // The transaction sees its own changes, and nobody else does until it commits.
+        assertEquals("[OK]\nname\tmark\nSteve\t70\nDave\t55\n", sendCommandToServer("SELECT name, mark FROM marks;", first));
+        assertEquals("[OK]\nname\tmark\nSteve\t65\n", sendCommandToServer("SELECT name, mark FROM marks;", second));
+        assertEquals("[ERROR] The table \"people\" does not exist.", sendCommandToServer("SELECT * FROM people;", second));
+        assertEquals("[OK]", sendCommandToServer("COMMIT;", first));
+        assertEquals("[OK]\nname\tmark\nSteve\t70\nDave\t55\n", sendCommandToServer("SELECT name, mark FROM marks;", second));
+        assertEquals("[OK]\nid\tname\n", sendCommandToServer("SELECT * FROM people;", second));
+
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", first));
+        assertEquals("[OK]", sendCommandToServer("DELETE FROM marks WHERE mark > 60;", first));
+        assertEquals("[OK]", sendCommandToServer("ALTER TABLE marks ADD grade;", first));
+        assertEquals("[OK]", sendCommandToServer("ROLLBACK;", first));
+        assertEquals("[ERROR] There is no transaction in progress.", sendCommandToServer("ROLLBACK;", first));
+        assertEquals("[OK]\nname\tmark\nSteve\t70\nDave\t55\n", sendCommandToServer("SELECT name, mark FROM marks;", first));
+        assertTrue(sendCommandToServer("BEGIN now;", first).startsWith("[ERROR]"));
+        assertEquals("[ERROR] There is no transaction in progress.", sendCommandToServer("COMMIT;", first));
+    }
+
+    @Test
+    public void testTransactionsHoldTheirLocks() {
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", first));
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 80 WHERE name == 'Steve';", first));
+        // Writers wait for the transaction, and give up after the lock timeout; readers do not wait.
+        assertEquals("[ERROR] The table \"marks\" is locked by another transaction.",
+                sendCommandToServer("UPDATE marks SET mark = 10 WHERE name == 'Steve';", second));
+        assertEquals("[OK]\nmark\n65\n", sendCommandToServer("SELECT mark FROM marks;", second));
+        // A statement run from its cached plan waits for the lock once, not again in a full parse.
+        long started = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("[ERROR] The table \"marks\" is locked by another transaction.",
+                    sendCommandToServer("DELETE FROM marks WHERE mark > 60;", second));
+        }
+        assertTrue(System.nanoTime() - started < 500_000_000L);
+        assertEquals("[OK]", sendCommandToServer("COMMIT;", first));
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 10 WHERE name == 'Steve';", second));
+
+        // A session that goes away mid-transaction gives up its changes and its locks.
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", second));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Bob', 35);", second));
+        second.close();
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 20 WHERE name == 'Steve';", first));
+        assertEquals("[OK]\nname\tmark\nSteve\t20\n", sendCommandToServer("SELECT name, mark FROM marks;", first));
+    }
+
+    // A rolled-back transaction leaves neither the files of a table it created nor the ids it used behind.
+    @Test
+    public void testRollbackDiscardsIdCounters() {
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", first));
+        assertEquals("[OK]", sendCommandToServer("CREATE TABLE people (name);", first));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO people VALUES ('Dave');", first));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Dave', 55);", first));
+        assertEquals("[OK]", sendCommandToServer("ROLLBACK;", first));
+        assertFalse(Paths.get("databases", "transactiondb", "people.info").toFile().exists());
+        assertFalse(Paths.get("databases", "transactiondb", "people.tab").toFile().exists());
+        assertEquals("[ERROR] The table \"people\" does not exist.", sendCommandToServer("SELECT * FROM people;", first));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Bob', 35);", second));
+        assertEquals("[OK]\nid\tname\n2\tBob\n", sendCommandToServer("SELECT id, name FROM marks WHERE mark < 60;", second));
+    }
+
+    // Two transactions waiting on each other's tables: the one that times out is rolled back and lets the other go on.
+    @Test
+    public void testLockTimeoutRollsBackTransaction() {
+        sendCommandToServer("CREATE TABLE grades (name, grade);", first);
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", first));
+        assertEquals("[OK]", sendCommandToServer("UPDATE marks SET mark = 80 WHERE name == 'Steve';", first));
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", second));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO grades VALUES ('Steve', 'A');", second));
+        assertEquals("[ERROR] The table \"marks\" is locked by another transaction, so this transaction was rolled back.",
+                sendCommandToServer("DELETE FROM marks WHERE mark > 60;", second));
+        assertEquals("[ERROR] There is no transaction in progress.", sendCommandToServer("COMMIT;", second));
+        assertEquals("[OK]", sendCommandToServer("INSERT INTO grades VALUES ('Dave', 'B');", first));
+        assertEquals("[OK]", sendCommandToServer("COMMIT;", first));
+        assertEquals("[OK]\nname\tgrade\nDave\tB\n", sendCommandToServer("SELECT name, grade FROM grades;", second));
+        assertEquals("[OK]\nmark\n80\n", sendCommandToServer("SELECT mark FROM marks;", second));
+    }
+
+    // A committed transaction is in the write-ahead log, so it survives a crash before any checkpoint.
+    @Test
+    public void testCommittedBatchSurvivesRestart() {
+        assertEquals("[OK]", sendCommandToServer("BEGIN;", first));
+        assertTimeoutPreemptively(Duration.ofMillis(5000), () -> {
+            for (int i = 0; i < 1000; i++) {
+                server.handleCommand("INSERT INTO marks VALUES ('student" + i + "', " + i + ");", first);
+            }
+        });
+        assertEquals("[OK]", sendCommandToServer("COMMIT;", first));
+        // The old server is dropped without close(), so nothing is checkpointed.
+        server = new DBServer();
+        Session session = server.newSession();
+        sendCommandToServer("USE transactionDB;", session);
+        assertEquals("[OK]\nname\nstudent999\n", sendCommandToServer("SELECT name FROM marks WHERE mark >= 999;", session));
+        assertEquals(1003, sendCommandToServer("SELECT id FROM marks;", session).split("\n").length);
+    }
+}
@@ -0,0 +1,64 @@
+package edu.uob;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypedColumnTest {
+
+    private boolean parses(String value) {
+        try {
+            Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+    @Test
+    public void testParsedCellsMatchDoubleParsing() {
+        String[] cells = {"5", "-5", "+.5", "5.", "1e3", " 7 ", "NaN", "Infinity", "0x1p3", "2f",
+                "NULL", "TRUE", "FALSE", "Steve", "", ".", "-", "1.2.3", "'5'", "N", "Inf"};
+        Table table = new Table("cells");
+        table.addFields(new ArrayList<>(Arrays.asList("value")), true);
+        for (String cell : cells) {
+            table.addRows(new ArrayList<>(Arrays.asList(cell)));
+        }
+        TypedColumn column = table.getTypedColumn(1);
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals(parses(cells[i]), column.isNumeric(i), cells[i]);
+            assertEquals(parses(cells[i]), TypedColumn.isDouble(cells[i]), cells[i]);
+            assertEquals(cells[i].matches("^[+-]?[0-9]*\\.?[0-9]+$"), column.isPlainNumber(i), cells[i]);
+            if (column.isNumeric(i)) assertEquals(Double.parseDouble(cells[i]), column.getNumber(i));
+        }
+        assertTrue(column.isKeyword(10));
+        assertFalse(column.isKeyword(13));
+    }
+
+    @Test
+    public void testNumericFiltersAfterChanges() {
+        DBServer server = new DBServer();
+        String db = "typed" + System.currentTimeMillis();
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> {
+            server.handleCommand("CREATE DATABASE " + db + ";");
+            server.handleCommand("USE " + db + ";");
+            server.handleCommand("CREATE TABLE marks (name, mark);");
+            server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);");
+            server.handleCommand("INSERT INTO marks VALUES ('Dave', 9);");
+            String response = server.handleCommand("SELECT name FROM marks WHERE mark > 10;");
+            assertTrue(response.contains("Steve"));
+            assertFalse(response.contains("Dave"));
+            server.handleCommand("UPDATE marks SET mark = 70 WHERE name == 'Dave';");
+            response = server.handleCommand("SELECT name FROM marks WHERE mark > 66;");
+            assertTrue(response.contains("Dave"));
+            assertFalse(response.contains("Steve"));
+            response = server.handleCommand("SELECT name FROM marks WHERE mark == 70.0;");
+            assertTrue(response.contains("Dave"));
+            server.handleCommand("DROP DATABASE " + db + ";");
+        });
+    }
+}
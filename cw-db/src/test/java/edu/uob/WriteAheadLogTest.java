@@ -0,0 +1,147 @@
+package edu.uob;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+    private DBServer server;
+
+    // Create a new server _before_ every @Test
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+    }
+
+    private String sendCommandToServer(String command) {
+        // Try to send a command to the server - this call will timeout if it takes too long (in case the server enters an infinite loop)
+        return assertTimeoutPreemptively(Duration.ofMillis(1000), () -> { return server.handleCommand(command);},
+                "Server took too long to respond (probably stuck in an infinite loop)");
+    }
+
+    @Test
+    public void testInsertsAreLoggedNotRewritten() throws Exception {
+        sendCommandToServer("CREATE DATABASE walDB1;");
+        sendCommandToServer("USE walDB1;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        File tableFile = Paths.get("databases", "waldb1", "marks.tab").toFile();
+        long emptySize = tableFile.length();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('student" + i + "', " + i + ");"));
+        }
+        assertEquals(emptySize, tableFile.length());
+        assertTrue(Paths.get("databases", "waldb1", WriteAheadLog.FILE_NAME).toFile().length() > 0);
+        String response = sendCommandToServer("SELECT * FROM marks WHERE mark >= 19;");
+        assertTrue(response.contains("20\tstudent19\t19\n"));
+        sendCommandToServer("DROP DATABASE walDB1;");
+    }
+
+    @Test
+    public void testRecoveryReplaysLog() throws Exception {
+        sendCommandToServer("CREATE DATABASE walDB2;");
+        sendCommandToServer("USE walDB2;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Dave', 55);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Bob', 35);");
+        sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Steve';");
+        sendCommandToServer("DELETE FROM marks WHERE name == 'Dave';");
+
+        // Simulate a crash: the old server never checkpoints, the new one replays the log.
+        server = new DBServer();
+        String contents = Files.readString(Paths.get("databases", "waldb2", "marks.tab"));
+        assertTrue(contents.contains("1\tSteve\t70\n"));
+        assertFalse(contents.contains("Dave"));
+        assertEquals(0, Paths.get("databases", "waldb2", WriteAheadLog.FILE_NAME).toFile().length());
+
+        sendCommandToServer("USE walDB2;");
+        sendCommandToServer("INSERT INTO marks VALUES ('Clive', 20);");
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("3\tBob\t35\n"));
+        assertTrue(response.contains("4\tClive\t20\n"));
+        assertEquals(5, response.split("\n").length);
+        sendCommandToServer("DROP DATABASE walDB2;");
+    }
+
+    // A checkpoint that cannot write every table back keeps the log, so nothing is lost to a crash.
+    @Test
+    public void testFailedCheckpointKeepsLog() throws Exception {
+        sendCommandToServer("CREATE DATABASE walDB3;");
+        sendCommandToServer("USE walDB3;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("CREATE INDEX byMark ON marks (mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65);");
+        File indexFile = Paths.get("databases", "waldb3", "marks" + FileReading.INDEX_EXTENSION).toFile();
+        File blocker = new File(indexFile, "blocker");
+        assertTrue(indexFile.delete() && indexFile.mkdir() && blocker.createNewFile());
+        server.close();
+        File log = Paths.get("databases", "waldb3", WriteAheadLog.FILE_NAME).toFile();
+        assertTrue(log.length() > 0);
+        assertFalse(Paths.get("databases", "waldb3", "marks.tab" + FileReading.TEMPORARY_EXTENSION).toFile().exists());
+
+        assertTrue(blocker.delete() && indexFile.delete());
+        server = new DBServer();
+        assertEquals(0, log.length());
+        sendCommandToServer("USE walDB3;");
+        assertEquals("[OK]\nname\nSteve\n", sendCommandToServer("SELECT name FROM marks WHERE mark > 60;"));
+        sendCommandToServer("DROP DATABASE walDB3;");
+    }
+
+    // A change that cannot be logged is reported as an error, in a transaction's COMMIT as well.
+    @Test
+    public void testFailedAppendIsReported() throws Exception {
+        sendCommandToServer("CREATE DATABASE walDB4;");
+        sendCommandToServer("USE walDB4;");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        // A new server has not opened the log yet, so a folder in its place makes every append fail.
+        server = new DBServer();
+        File log = Paths.get("databases", "waldb4", WriteAheadLog.FILE_NAME).toFile();
+        assertTrue((!log.exists() || log.delete()) && log.mkdir());
+        sendCommandToServer("USE walDB4;");
+        assertEquals("[ERROR] The changes could not be written to disk.",
+                sendCommandToServer("INSERT INTO marks VALUES ('Steve', 65);"));
+        // The second COMMIT runs from its cached plan, and must not be retried as if nothing were open.
+        for (int i = 0; i < 2; i++) {
+            assertEquals("[OK]", sendCommandToServer("BEGIN;"));
+            assertEquals("[OK]", sendCommandToServer("INSERT INTO marks VALUES ('Dave', 55);"));
+            assertEquals("[ERROR] The transaction could not be written to disk.", sendCommandToServer("COMMIT;"));
+        }
+        sendCommandToServer("DROP DATABASE walDB4;");
+    }
+
+    // A checkpoint removes only the records from before it started; those appended meanwhile are kept.
+    @Test
+    public void testTruncateKeepsLaterRecords() throws Exception {
+        File folder = Files.createTempDirectory("wal").toFile();
+        WriteAheadLog log = new WriteAheadLog(folder.getPath());
+        ArrayList<WriteAheadLog.Record> first = new ArrayList<>();
+        first.add(new WriteAheadLog.Record(WriteAheadLog.Type.INSERT, "marks", new ArrayList<>(Arrays.asList("1", "Steve"))));
+        log.append(first);
+        long position = log.position();
+        ArrayList<WriteAheadLog.Record> second = new ArrayList<>();
+        second.add(new WriteAheadLog.Record(WriteAheadLog.Type.DELETE, "marks", new ArrayList<>(Arrays.asList("1"))));
+        log.append(second);
+        log.truncate(position);
+        assertEquals(log.getAppendedRecords(), log.getSyncedRecords());
+        ArrayList<WriteAheadLog.Record> kept = log.readAll();
+        assertEquals(1, kept.size());
+        assertEquals(WriteAheadLog.Type.DELETE, kept.get(0).getType());
+
+        // An older position is already gone, and appends go on after what was kept.
+        log.truncate(position);
+        log.append(first);
+        assertEquals(2, log.readAll().size());
+        log.truncate(log.position());
+        assertEquals(0, log.readAll().size());
+        log.close();
+        assertTrue(new File(folder, WriteAheadLog.FILE_NAME).delete() && folder.delete());
+    }
+}